@@ -1,6 +1,16 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
-public class Board {
+public class Board implements Minefield {
 
 	/**
 	 * Board Size Constants. Defined:
@@ -8,11 +18,13 @@ public class Board {
 	 * 		Medium 	  - 16x16, 40 Mines
 	 * 		Large 	  - 16x32, 100 Mines
 	 * 		Humongous - 32x32, 225 Mines
+	 * 		Custom	  - any other size
 	 */
 	public static final int SMALL = 0;
 	public static final int MEDIUM = 1;
 	public static final int LARGE = 2;
 	public static final int HUMONGOUS = 3;
+	public static final int CUSTOM = -1;
 
 	/**
 	 * Board View Matrix Constants
@@ -29,9 +41,40 @@ public class Board {
 
 	private static final int[][] boardSizes = { { 8, 8, 10 }, { 16, 16, 40 }, { 16, 32, 100 }, { 32, 32, 225 } };
 
-	private int[][] board, viewMatrix;
+	/**
+	 * View State Packing Constants. Each cell takes 2 bits, so a word holds 16 cells
+	 * and a page of 256 words holds 4096 cells.
+	 */
+	private static final int WORD_SHIFT = 4;
+	private static final int PAGE_SHIFT = 8;
+	private static final int PAGE_WORDS = 1 << PAGE_SHIFT;
+	private static final int PAGE_CELLS = PAGE_WORDS << WORD_SHIFT;
+	private static final int[] EMPTY_PAGE = new int[PAGE_WORDS];
+
+	/**
+	 * Generation loops, here and in {@link LargeBoard} and {@link Minimap}, check for
+	 * cancellation once every CANCEL_CHECK_MASK + 1 mines or cells.
+	 */
+	static final int CANCEL_CHECK_MASK = (1 << 12) - 1;
+
+	/**
+	 * Parallel Reveal Constants. An opening switches to the parallel fill once this many
+	 * cells have been revealed sequentially, and a fill task hands off half of its work
+	 * list once it grows past the split size.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+	private static final int SPLIT_SIZE = 1 << 10;
+
+	private int[] values;
+	private Topology topology;
+	private Topology.Adjacency adjacency;
+	private int[][] viewPages;
+	private boolean[] ownedPages;
+	private boolean sharedPages;
 	private int rows, cols, mines, flags;
 	private int size;
+	private long seed;
+	private boolean parallelReveal = true;
 
 	/**
 	 * Creates a 'SMALL' board.
@@ -58,12 +101,44 @@ public class Board {
 	 * @param mines number of mines in the board.
 	 */
 	public Board(int rows, int cols, int mines) {
+		this(rows, cols, mines, new Random().nextLong());
+	}
+	
+	/**
+	 * Creates a board of the given size with the given number of mines, placing the mines
+	 * with the given seed. Boards with the same size and seed are identical.
+	 * 
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param mines number of mines in the board.
+	 * @param seed seed used to place the mines
+	 */
+	public Board(int rows, int cols, int mines, long seed) {
+		this(rows, cols, mines, seed, Topology.SQUARE);
+	}
+	
+	/**
+	 * Creates a board of the given size and topology with the given number of mines,
+	 * placing the mines with the given seed.
+	 * 
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param mines number of mines in the board.
+	 * @param seed seed used to place the mines
+	 * @param topology neighbourhood of the cells
+	 * @throws CancellationException if the calling thread is interrupted while the mines
+	 *         are placed
+	 */
+	public Board(int rows, int cols, int mines, long seed, Topology topology) {
+		this.seed = seed;
 		this.rows = rows;
 		this.cols = cols;
 		this.mines = mines;
 		this.flags = 0;
-		board = new int[rows][cols];
-		viewMatrix = new int[rows][cols];
+		this.size = CUSTOM;
+		setTopology(topology);
+		values = new int[rows * cols];
+		clearView();
 		addMines(mines);
 	}
 	
@@ -74,82 +149,302 @@ public class Board {
 	 * @param viewMatrix view matrix to use
 	 */
 	public Board(int[][] board, int[][] viewMatrix, int mines) {
-	    this.board = board;
-	    this.viewMatrix = viewMatrix;
+	    this(board, viewMatrix, mines, Topology.SQUARE);
+	}
+	
+	/**
+	 * Creates a board of the given topology using an integer array with the mines placed,
+	 * and a view matrix.
+	 * 
+	 * @param board board with only mines placed
+	 * @param viewMatrix view matrix to use
+	 * @param topology neighbourhood of the cells
+	 */
+	public Board(int[][] board, int[][] viewMatrix, int mines, Topology topology) {
 	    this.rows = board.length;
 	    this.cols = board[0].length;
 	    this.mines = mines;
-	    this.flags = 0;
+	    this.size = CUSTOM;
+	    setTopology(topology);
+	    values = new int[rows * cols];
+	    for (int r = 0; r < rows; r++)
+	        for (int c = 0; c < cols; c++)
+	            values[r * cols + c] = board[r][c] == MINE ? MINE : 0;
+	    setViewMatrix(viewMatrix);
 	    countMines();
 	}
+	
+	/**
+	 * Creates a board from the set of mine cells and the packed view state, as returned by
+	 * {@link #getPackedView()}.
+	 * 
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param mineCells cells (row * cols + col) that hold a mine
+	 * @param viewWords packed view state
+	 * @param size board size constant
+	 * @param seed seed the mines were placed with
+	 * @param topology neighbourhood of the cells
+	 */
+	public Board(int rows, int cols, BitSet mineCells, int[] viewWords, int size, long seed, Topology topology) {
+		this.rows = rows;
+		this.cols = cols;
+		this.mines = mineCells.cardinality();
+		this.size = size;
+		this.seed = seed;
+		setTopology(topology);
+		values = new int[rows * cols];
+		for (int i = mineCells.nextSetBit(0); i >= 0 && i < values.length; i = mineCells.nextSetBit(i + 1))
+			values[i] = MINE;
+		countMines();
+		setPackedView(viewWords);
+	}
+	
+	/**
+	 * Creates a fork of the given board. The mines board and the view pages are shared
+	 * until one of the boards writes to them.
+	 * 
+	 * @param parent board to fork
+	 */
+	private Board(Board parent) {
+		this.values = parent.values;
+		this.topology = parent.topology;
+		this.adjacency = parent.adjacency;
+		this.viewPages = parent.viewPages;
+		this.sharedPages = true;
+		this.rows = parent.rows;
+		this.cols = parent.cols;
+		this.mines = parent.mines;
+		this.flags = parent.flags;
+		this.size = parent.size;
+		this.seed = parent.seed;
+		this.parallelReveal = parent.parallelReveal;
+	}
 
 	/**
 	 * Places the given number of mines on the board. Also generates adjacent
-	 * mine numbers.
+	 * mine numbers. Stops with a CancellationException if the thread is interrupted.
 	 * 
 	 * @param numMines number of mines to place
 	 */
 	private void addMines(int numMines) {
-		Random rand = new Random(System.currentTimeMillis());
+		Random rand = new Random(seed);
 		for (int i = 0; i < numMines; i++) {
+			if ((i & CANCEL_CHECK_MASK) == 0)
+				checkCancelled();
 			int r = rand.nextInt(rows), c = rand.nextInt(cols);
-			while (board[r][c] == MINE) {
+			while (values[r * cols + c] == MINE) {
 				r = rand.nextInt(rows);
 				c = rand.nextInt(cols);
 			}
-			board[r][c] = MINE;
+			values[r * cols + c] = MINE;
 		}
 		countMines();
 	}
 	
+	/**
+	 * Sets the topology of the board, fetching its neighbour table.
+	 * 
+	 * @param topology neighbourhood of the cells
+	 */
+	private void setTopology(Topology topology) {
+		this.topology = topology;
+		this.adjacency = topology.adjacency(rows, cols);
+	}
+	
 	/**
 	 * Counts the mines around each square in the board.
 	 */
 	private void countMines() {
-	    for (int r = 0; r < rows; r++)
-            for (int c = 0; c < cols; c++)
-                if (board[r][c] == MINE)
-                    for (int ro = -1; ro < 2; ro++)
-                        for (int co = -1; co < 2; co++)
-                            if (r + ro > -1 && r + ro < rows && c + co > -1 && c + co < cols
-                                    && board[r + ro][c + co] != MINE)
-                                board[r + ro][c + co]++;
+	    int[] around = new int[adjacency.getMaxDegree()];
+	    for (int i = 0; i < values.length; i++) {
+	        if ((i & CANCEL_CHECK_MASK) == 0)
+	            checkCancelled();
+	        if (values[i] == MINE)
+	            for (int k = 0, count = adjacency.neighbours(i, around); k < count; k++)
+	                if (values[around[k]] != MINE)
+	                    values[around[k]]++;
+	    }
+	}
+	
+	/**
+	 * Throws a CancellationException if the current thread is interrupted, so generating a
+	 * large board on a cancelled task stops early.
+	 */
+	static void checkCancelled() {
+		if (Thread.currentThread().isInterrupted())
+			throw new CancellationException("Board generation cancelled.");
 	}
 	
 	/**
 	 * A method that reveals an area of cells originating at the given row and col.
-	 * Calls a separate recursive method that performs the revealing.
+	 * Calls a separate method that performs the revealing.
 	 * 
      * @param row row of square to be revealed
      * @param col col of square to be revealed
 	 * @return true if reveal was successful, false if out of bounds or on a mine
 	 */
 	public boolean reveal(int row, int col) {
-		if (row < 0 || col < 0 || row > rows || col > cols)
+		if (row < 0 || col < 0 || row >= rows || col >= cols)
 			return false;
-		if (board[row][col] == MINE)
+		if (values[row * cols + col] == MINE)
 			return false;
-		revealImpl(row, col);
+		revealImpl(row * cols + col);
 		return true;
 	}
 
-	private void revealImpl(int r, int c) {
-		if (r < 0 || c < 0 || r >= rows || c >= cols)
-			return;
-		if (board[r][c] == -1)
-			return;
-		if (viewMatrix[r][c] == SHOWN)
-			return;
-
-		viewMatrix[r][c] = SHOWN;
-		if (board[r][c] == 0) {
-			for (int ro = -1; ro < 2; ro++)
-				for (int co = -1; co < 2; co++)
-					if (ro != 0 || co != 0)
-						revealImpl(r + ro, c + co);
+	/**
+	 * Reveals the area around the given cell with an explicit stack, so large openings
+	 * cannot overflow the call stack. If parallel reveal is on and the opening grows past
+	 * PARALLEL_THRESHOLD cells, the cells still on the stack are handed to the parallel fill.
+	 */
+	private void revealImpl(int start) {
+		int[] stack = new int[64], around = new int[adjacency.getMaxDegree()];
+		int top = 0, revealed = 0;
+		stack[top++] = start;
+		while (top > 0) {
+			int cell = stack[--top];
+			if (values[cell] == MINE || view(cell) == SHOWN)
+				continue;
+
+			setView(cell, SHOWN);
+			if (values[cell] == 0) {
+				if (top + topology.getMaxDegree() > stack.length)
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				for (int k = 0, count = adjacency.neighbours(cell, around); k < count; k++) {
+					int n = around[k];
+					if (values[n] != MINE && view(n) != SHOWN)
+						stack[top++] = n;
+				}
+			}
+			if (parallelReveal && ++revealed == PARALLEL_THRESHOLD && top > 0) {
+				parallelReveal(Arrays.copyOf(stack, top));
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reveals the rest of an opening across the common fork-join pool. Workers claim cells
+	 * by setting their bit in a shared atomic bitmap, so each cell is expanded once, while
+	 * the view pages are only read. Once the fill is done, the claimed cells are written to
+	 * the view pages in parallel, one task per page. The cells revealed are the same as in
+	 * the sequential fill, since both reveal exactly the cells connected to the seeds.
+	 * 
+	 * @param seeds cells left to visit
+	 */
+	private void parallelReveal(int[] seeds) {
+		AtomicIntegerArray claimed = new AtomicIntegerArray((rows * cols + 31) >>> 5);
+		ForkJoinPool.commonPool().invoke(new FillTask(claimed, seeds, seeds.length));
+
+		// Unshare the page table up front, so the page tasks only touch their own page.
+		if (sharedPages)
+			writablePage(0);
+		IntStream.range(0, viewPages.length).parallel().forEach((p) -> { // public void accept(int p)
+			int first = p * PAGE_CELLS, last = Math.min(rows * cols, first + PAGE_CELLS);
+			int[] page = null;
+			for (int w = first >>> 5; w << 5 < last; w++) {
+				int bits = claimed.get(w);
+				if (bits != 0 && page == null)
+					page = writablePage(p);
+				while (bits != 0) {
+					int i = (w << 5) + Integer.numberOfTrailingZeros(bits) - first;
+					int word = i >>> WORD_SHIFT, shift = (i & 15) << 1;
+					page[word] = (page[word] & ~(3 << shift)) | (SHOWN << shift);
+					bits &= bits - 1;
+				}
+			}
+		});
+	}
+
+	/**
+	 * A task of the parallel fill. It works through its own list depth-first and forks half
+	 * of it off whenever it grows past SPLIT_SIZE, so idle workers can steal the rest.
+	 */
+	private class FillTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private AtomicIntegerArray claimed;
+		private int[] work, around = new int[adjacency.getMaxDegree()];
+		private int top;
+
+		FillTask(AtomicIntegerArray claimed, int[] work, int top) {
+			this.claimed = claimed;
+			this.work = work;
+			this.top = top;
+		}
+
+		@Override
+		protected void compute() {
+			List<FillTask> forked = new ArrayList<FillTask>();
+			while (true) {
+				while (top > 0) {
+					int cell = work[--top];
+					if (values[cell] == MINE || view(cell) == SHOWN || !claim(cell) || values[cell] != 0)
+						continue;
+					ensureCapacity(topology.getMaxDegree());
+					for (int k = 0, count = adjacency.neighbours(cell, around); k < count; k++) {
+						int n = around[k];
+						if (values[n] != MINE && view(n) != SHOWN && !isClaimed(n))
+							work[top++] = n;
+					}
+					if (top > SPLIT_SIZE) {
+						int half = top / 2;
+						FillTask task = new FillTask(claimed, Arrays.copyOfRange(work, half, top), top - half);
+						task.fork();
+						forked.add(task);
+						top = half;
+					}
+				}
+				if (forked.isEmpty())
+					return;
+				// Take back a fork nobody stole rather than joining it, which would run it
+				// nested on this stack.
+				FillTask task = forked.remove(forked.size() - 1);
+				if (task.tryUnfork()) {
+					ensureCapacity(task.top);
+					System.arraycopy(task.work, 0, work, top, task.top);
+					top += task.top;
+				} else {
+					task.join();
+				}
+			}
+		}
+
+		private void ensureCapacity(int extra) {
+			if (top + extra > work.length)
+				work = Arrays.copyOf(work, Math.max(work.length * 2, top + extra));
+		}
+
+		private boolean isClaimed(int cell) {
+			return (claimed.get(cell >>> 5) & (1 << cell)) != 0;
+		}
+
+		/**
+		 * Claims a cell for this task.
+		 * @return false if another task claimed it first
+		 */
+		private boolean claim(int cell) {
+			int w = cell >>> 5, bit = 1 << cell;
+			while (true) {
+				int old = claimed.get(w);
+				if ((old & bit) != 0)
+					return false;
+				if (claimed.compareAndSet(w, old, old | bit))
+					return true;
+			}
 		}
 	}
 
+	/**
+	 * Sets whether large openings are revealed in parallel. On by default.
+	 * @param parallelReveal true to reveal large openings in parallel
+	 */
+	public void setParallelReveal(boolean parallelReveal) {
+		this.parallelReveal = parallelReveal;
+	}
+
 	/**
 	 * Performs a standard flagging procedure on the given tile.
 	 * If flags < mines then:
@@ -163,11 +458,143 @@ public class Board {
 	 * @param col col of square to be flagged
 	 */
 	public void flag(int row, int col) {
-		switch(viewMatrix[row][col]) {
-		case HIDDEN: viewMatrix[row][col] = FLAGGED; flags++; break;
-		case FLAGGED: viewMatrix[row][col] = QMARK; flags--; break;
-		case QMARK: viewMatrix[row][col] = HIDDEN; break;
+		switch(getView(row, col)) {
+		case HIDDEN: setView(row, col, FLAGGED); flags++; break;
+		case FLAGGED: setView(row, col, QMARK); flags--; break;
+		case QMARK: setView(row, col, HIDDEN); break;
+		}
+	}
+	
+	/**
+	 * Returns an independent copy of this board in O(1). The copy shares the mines board
+	 * and the view pages with this board; whichever board writes to a shared page first
+	 * copies that page, so the cost of a fork grows with the changes made after it.
+	 * 
+	 * @return fork of this board
+	 */
+	public Board fork() {
+		sharedPages = true;
+		return new Board(this);
+	}
+	
+	/**
+	 * Restores the view state of this board from a fork of it, e.g. one taken before a move.
+	 * The view pages are shared with the snapshot, so this is O(1) as well.
+	 * 
+	 * @param snapshot fork of this board to restore
+	 */
+	public void restore(Board snapshot) {
+		if (snapshot.values != values)
+			throw new IllegalArgumentException("Snapshot is not a fork of this board.");
+		snapshot.sharedPages = true;
+		viewPages = snapshot.viewPages;
+		ownedPages = null;
+		sharedPages = true;
+		flags = snapshot.flags;
+	}
+	
+	/**
+	 * Finds the cells whose view value differs between this board and another board of the
+	 * same size, usually a fork of it. Pages shared between the two are skipped without being
+	 * read, so comparing against a recent fork costs time in proportion to the change.
+	 * 
+	 * @param other board to compare with
+	 * @param action action to run with each changed cell (row * cols + col)
+	 */
+	public void diff(Board other, IntConsumer action) {
+		if (other.rows != rows || other.cols != cols)
+			throw new IllegalArgumentException("Boards are not the same size.");
+		for (int p = 0; p < viewPages.length; p++) {
+			int[] page = viewPages[p], otherPage = other.viewPages[p];
+			if (page == otherPage)
+				continue;
+			for (int w = 0; w < PAGE_WORDS; w++) {
+				int changed = page[w] ^ otherPage[w];
+				while (changed != 0) {
+					int bit = Integer.numberOfTrailingZeros(changed);
+					action.accept(p * PAGE_CELLS + (w << WORD_SHIFT) + (bit >>> 1));
+					changed &= ~(3 << (bit & ~1));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Hides every cell and clears all flags and question marks.
+	 */
+	public void clearView() {
+		int pages = (rows * cols + PAGE_CELLS - 1) / PAGE_CELLS;
+		viewPages = new int[pages][];
+		for (int p = 0; p < pages; p++)
+			viewPages[p] = EMPTY_PAGE;
+		ownedPages = new boolean[pages];
+		sharedPages = false;
+		flags = 0;
+	}
+	
+	/**
+	 * Gets the view value (Hidden, Shown, etc.) of the given cell.
+	 * 
+	 * @param row row of the cell
+	 * @param col col of the cell
+	 * @return view value of the cell
+	 */
+	public int getView(int row, int col) {
+		return view(row * cols + col);
+	}
+	
+	/**
+	 * Gets the view value of the given cell.
+	 * 
+	 * @param i the cell (row * cols + col)
+	 * @return view value of the cell
+	 */
+	private int view(int i) {
+		int word = viewPages[i / PAGE_CELLS][(i >>> WORD_SHIFT) & (PAGE_WORDS - 1)];
+		return (word >>> ((i & 15) << 1)) & 3;
+	}
+	
+	/**
+	 * Sets the view value of the given cell, copying its page first if it is shared.
+	 * 
+	 * @param row row of the cell
+	 * @param col col of the cell
+	 * @param value new view value
+	 */
+	private void setView(int row, int col, int value) {
+		setView(row * cols + col, value);
+	}
+	
+	/**
+	 * Sets the view value of the given cell, copying its page first if it is shared.
+	 * 
+	 * @param i the cell (row * cols + col)
+	 * @param value new view value
+	 */
+	private void setView(int i, int value) {
+		int[] page = writablePage(i / PAGE_CELLS);
+		int w = (i >>> WORD_SHIFT) & (PAGE_WORDS - 1), shift = (i & 15) << 1;
+		page[w] = (page[w] & ~(3 << shift)) | (value << shift);
+	}
+	
+	/**
+	 * Returns the given view page, ready to be written to. Copies the page table if it is
+	 * shared with a fork, and copies the page itself if this board does not own it yet.
+	 * 
+	 * @param p index of the page
+	 * @return writable page
+	 */
+	private int[] writablePage(int p) {
+		if (sharedPages) {
+			viewPages = viewPages.clone();
+			ownedPages = new boolean[viewPages.length];
+			sharedPages = false;
 		}
+		if (!ownedPages[p]) {
+			viewPages[p] = viewPages[p].clone();
+			ownedPages[p] = true;
+		}
+		return viewPages[p];
 	}
 	
 	/**
@@ -189,15 +616,15 @@ public class Board {
 	    StringBuilder builder = new StringBuilder();
 	    for (int r = 0; r < rows; r++) {
             for (int c = 0; c < cols; c++) {
-                if (viewMatrix[r][c] == SHOWN) {
-                    if (board[r][c] < 0)
+                if (getView(r, c) == SHOWN) {
+                    if (getValue(r, c) < 0)
                         builder.append("M");
-                    else if (board[r][c] == 0)
+                    else if (getValue(r, c) == 0)
                         builder.append(" ");
                     else
-                        builder.append(board[r][c]);
+                        builder.append(getValue(r, c));
                 } else
-                    System.out.print("#");
+                    builder.append("#");
             }
             builder.append("\n");
         }
@@ -205,27 +632,113 @@ public class Board {
 	}
 
 	/**
-	 * Gets the internal mines board.
+	 * Gets a copy of the mines board. Use {@link #getValue(int, int)} to read single cells.
 	 * @return mines board
 	 */
 	public int[][] getBoard() {
-		return this.board;
+		int[][] board = new int[rows][cols];
+		for (int r = 0; r < rows; r++)
+			System.arraycopy(values, r * cols, board[r], 0, cols);
+		return board;
+	}
+	
+	/**
+	 * Gets the internal mines board, one value per cell (row * cols + col). Shared with
+	 * forks of this board, so it must not be modified.
+	 * @return mine values
+	 */
+	public int[] getValues() {
+		return values;
+	}
+	
+	/**
+	 * Gets the topology of the board.
+	 * @return the topology
+	 */
+	public Topology getTopology() {
+		return topology;
+	}
+	
+	/**
+	 * Gets the neighbours of the cells of the board, see {@link Topology#adjacency(int, int)}.
+	 * @return neighbours of the board shape
+	 */
+	public Topology.Adjacency getAdjacency() {
+		return adjacency;
 	}
 
 	/**
-	 * Gets the internal view matrix.
+	 * Gets the mine value (mine or number of adjacent mines) of the given cell.
+	 * 
+	 * @param row row of the cell
+	 * @param col col of the cell
+	 * @return mine value of the cell
+	 */
+	public int getValue(int row, int col) {
+		return values[row * cols + col];
+	}
+	
+	/**
+	 * Gets a copy of the view matrix. Use {@link #getView(int, int)} to read single cells.
 	 * @return view matrix
 	 */
 	public int[][] getViewMatrix() {
-		return this.viewMatrix;
+		int[][] viewMatrix = new int[rows][cols];
+		for (int r = 0; r < rows; r++)
+			for (int c = 0; c < cols; c++)
+				viewMatrix[r][c] = getView(r, c);
+		return viewMatrix;
 	}
 	
 	/**
-	 * Sets the internal view matrix.
+	 * Sets the view state from a view matrix, recounting the flags.
 	 * @param viewMatrix new view matrix
 	 */
 	public void setViewMatrix(int[][] viewMatrix) {
-		this.viewMatrix = viewMatrix;
+		clearView();
+		for (int r = 0; r < rows; r++)
+			for (int c = 0; c < cols; c++)
+				if (viewMatrix[r][c] != HIDDEN) {
+					setView(r, c, viewMatrix[r][c]);
+					if (viewMatrix[r][c] == FLAGGED)
+						flags++;
+				}
+	}
+
+	/**
+	 * Gets a copy of the packed view state: 2 bits per cell, 16 cells per word, cell i in
+	 * bits 2 * (i % 16) and up of word i / 16.
+	 * @return packed view state
+	 */
+	public int[] getPackedView() {
+		int[] words = new int[(rows * cols + 15) >>> WORD_SHIFT];
+		for (int p = 0, w = 0; w < words.length; p++, w += PAGE_WORDS)
+			System.arraycopy(viewPages[p], 0, words, w, Math.min(PAGE_WORDS, words.length - w));
+		return words;
+	}
+	
+	/**
+	 * Sets the view state from packed words, as returned by {@link #getPackedView()},
+	 * recounting the flags. Pages that are all hidden stay shared with the empty page.
+	 * @param words packed view state
+	 */
+	public void setPackedView(int[] words) {
+		if (words.length != (rows * cols + 15) >>> WORD_SHIFT)
+			throw new IllegalArgumentException("Packed view is not the size of the board.");
+		clearView();
+		for (int p = 0, w = 0; w < words.length; p++, w += PAGE_WORDS) {
+			int end = Math.min(w + PAGE_WORDS, words.length);
+			for (int i = w; i < end; i++) {
+				// A cell is flagged (binary 10) if its high bit is set and its low bit is not.
+				flags += Integer.bitCount((words[i] >>> 1) & ~words[i] & 0x55555555);
+				if (words[i] != 0 && !ownedPages[p]) {
+					viewPages[p] = new int[PAGE_WORDS];
+					ownedPages[p] = true;
+				}
+			}
+			if (ownedPages[p])
+				System.arraycopy(words, w, viewPages[p], 0, end - w);
+		}
 	}
 
 	/**
@@ -267,20 +780,24 @@ public class Board {
 	public int getSize() {
 		return size;
 	}
+	
+	/**
+	 * Gets the seed the mines were placed with, or 0 for boards loaded from a mines board.
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
 
 	/**
 	 * Returns true if the game is won, returns false in any other state.
 	 * @return true if the game is won
 	 */
 	public boolean isWon() {
-		boolean won = true;
-		for (int r = 0; r < rows; r++) {
-			for (int c = 0; c < cols; c++) {
-				if(viewMatrix[r][c] == HIDDEN && board[r][c] != MINE)
-					won = false;
-			}
-		}
-		return won;
+		for (int i = 0; i < values.length; i++)
+			if (values[i] != MINE && view(i) == HIDDEN)
+				return false;
+		return true;
 	}
 
 }
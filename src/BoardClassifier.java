@@ -0,0 +1,159 @@
+/**
+ * Scores boards as they are generated and keeps those whose 3BV falls in a target band.
+ * It also keeps running correlations between the scores of solved boards and their solve
+ * times, so the scores can be checked against how hard the boards actually were.
+ *
+ * A classifier is not thread-safe; use one per generating thread.
+ */
+public class BoardClassifier {
+
+	private BoardScorer scorer = new BoardScorer();
+	private int min3BV, max3BV;
+	private long scored, accepted;
+	private Correlation threeBVTime = new Correlation(), openingsTime = new Correlation(),
+			isolatedTime = new Correlation();
+
+	/**
+	 * Creates a classifier that accepts boards with a 3BV between the given bounds, inclusive.
+	 * @param min3BV smallest accepted 3BV
+	 * @param max3BV largest accepted 3BV
+	 */
+	public BoardClassifier(int min3BV, int max3BV) {
+		this.min3BV = min3BV;
+		this.max3BV = max3BV;
+	}
+
+	/**
+	 * Scores a board and checks whether it is in the target band.
+	 * @param board board to score
+	 * @return true if the 3BV of the board is in the band
+	 */
+	public boolean accept(Board board) {
+		scorer.score(board);
+		scored++;
+		if (scorer.get3BV() < min3BV || scorer.get3BV() > max3BV)
+			return false;
+		accepted++;
+		return true;
+	}
+
+	/**
+	 * Generates boards of the given size until one is in the target band. Gives up after the
+	 * given number of attempts, e.g. if the band cannot be reached for this size.
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param mines number of mines in the board
+	 * @param attempts largest number of boards to generate
+	 * @return accepted board, or null if none was found
+	 */
+	public Board generate(int rows, int cols, int mines, int attempts) {
+		for (int i = 0; i < attempts; i++) {
+			Board board = new Board(rows, cols, mines);
+			if (accept(board))
+				return board;
+		}
+		return null;
+	}
+
+	/**
+	 * Records the solve time of a board for the score/solve time correlations.
+	 * @param board solved board
+	 * @param solveMillis time taken to solve it in ms
+	 */
+	public void recordSolve(Board board, long solveMillis) {
+		scorer.score(board);
+		threeBVTime.add(scorer.get3BV(), solveMillis);
+		openingsTime.add(scorer.getOpenings(), solveMillis);
+		isolatedTime.add(scorer.getIsolated(), solveMillis);
+	}
+
+	/**
+	 * Gets the scorer, holding the scores of the last board classified.
+	 * @return the scorer
+	 */
+	public BoardScorer getScorer() {
+		return scorer;
+	}
+
+	/**
+	 * Gets the number of boards scored.
+	 * @return number of boards scored
+	 */
+	public long getScored() {
+		return scored;
+	}
+
+	/**
+	 * Gets the number of boards accepted.
+	 * @return number of boards accepted
+	 */
+	public long getAccepted() {
+		return accepted;
+	}
+
+	/**
+	 * Gets the correlation between 3BV and solve time.
+	 * @return 3BV/solve time correlation
+	 */
+	public Correlation get3BVTime() {
+		return threeBVTime;
+	}
+
+	/**
+	 * Gets the correlation between number of openings and solve time.
+	 * @return openings/solve time correlation
+	 */
+	public Correlation getOpeningsTime() {
+		return openingsTime;
+	}
+
+	/**
+	 * Gets the correlation between number of isolated numbers and solve time.
+	 * @return isolated numbers/solve time correlation
+	 */
+	public Correlation getIsolatedTime() {
+		return isolatedTime;
+	}
+
+	/**
+	 * A streaming Pearson correlation, updated one pair at a time (Welford's method).
+	 */
+	public static class Correlation {
+
+		private long count;
+		private double meanX, meanY, varX, varY, covariance;
+
+		/**
+		 * Adds a pair of values.
+		 * @param x first value
+		 * @param y second value
+		 */
+		public void add(double x, double y) {
+			count++;
+			double dx = x - meanX, dy = y - meanY;
+			meanX += dx / count;
+			meanY += dy / count;
+			varX += dx * (x - meanX);
+			varY += dy * (y - meanY);
+			covariance += dx * (y - meanY);
+		}
+
+		/**
+		 * Gets the correlation coefficient of the pairs added so far.
+		 * @return correlation coefficient, or NaN with fewer than two pairs
+		 */
+		public double get() {
+			if (count < 2)
+				return Double.NaN;
+			return covariance / Math.sqrt(varX * varY);
+		}
+
+		/**
+		 * Gets the number of pairs added.
+		 * @return number of pairs
+		 */
+		public long getCount() {
+			return count;
+		}
+	}
+}
@@ -1,31 +1,44 @@
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
 
+import javafx.beans.value.ChangeListener;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
 import javafx.geometry.VPos;
-import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Region;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
 import javafx.stage.Stage;
 
 /**
  * A class that serves as an intermediary between the Board class
  * and the GUI. It contains an internal class which defines a Cell in the
- * GridPane view of the board.
+ * GridPane view of the board, and one which draws boards too large for a
+ * Cell per cell on a canvas.
  * 
  * @author Ethan Jaszewski
  */
@@ -36,35 +49,72 @@ public class BoardContainer {
 			Color.CORAL, Color.FIREBRICK, Color.FIREBRICK, Color.FIREBRICK	
 		};
 	
+	/**
+	 * Smallest size of a Cell in px. Boards that would need smaller Cells to fit are scrolled instead.
+	 */
+	public static final int MIN_CELL_SIZE = 12;
+	
+	/**
+	 * Boards with more cells than this are drawn on a canvas instead of as a Cell per cell.
+	 * A Cell takes about 9.4 KB of heap and 0.1 ms to build, so the GridPane view stays under
+	 * about 150 MB and 2 s.
+	 */
+	public static final int NODE_VIEW_LIMIT = 1 << 14;
+	
+	private Minefield field;
 	private Board board;
-	private Stack<int[][]> redoBuffer, undoBuffer;
-	private GridPane boardView;
+	private Stack<Board> redoBuffer, undoBuffer;
+	private HintEngine hints;
+	private Cell[] cells;
+	private CanvasView canvas;
+	private int hinted = -1;
+	private int cellSize;
+	private int moves;
+	private long startTime;
+	private boolean finished;
+	private ArrayList<IntConsumer> changeListeners = new ArrayList<IntConsumer>();
+	private ArrayList<Runnable> moveListeners = new ArrayList<Runnable>();
+	private ArrayList<Runnable> viewportListeners = new ArrayList<Runnable>();
+	private Region boardView;
 	private Runnable winAction, loseAction;
 	private File saveFile;
 	
 	/**
-	 * Creates a new BoardContainer using the specified board.
+	 * Creates a new BoardContainer using the specified board. Undo, redo, restart, hints and
+	 * saving need a {@link Board}; other boards are only played.
 	 * @param board board to use
 	 * @param cellSize size of the cells
      * @param winAction action to run on a victory
      * @param loseAction action to run on a loss
      * @param stage main JavaFX stage
 	 */
-	public BoardContainer(Board board, int cellSize, Runnable winAction, Runnable loseAction, Stage stage) {
-		this.board = board;
-		this.undoBuffer = new Stack<int[][]>();
-		this.redoBuffer = new Stack<int[][]>();
+	public BoardContainer(Minefield board, int cellSize, Runnable winAction, Runnable loseAction, Stage stage) {
+		this(board, cellSize, winAction, loseAction, stage, null);
+	}
+	
+	/**
+	 * Creates a new BoardContainer using the specified board, reporting progress as the
+	 * board view is built. This may run off the JavaFX thread, as long as the board view is
+	 * attached to the scene on the JavaFX thread afterwards. If the calling thread is
+	 * interrupted, building stops with a CancellationException.
+	 * @param board board to use
+	 * @param cellSize size of the cells
+	 * @param winAction action to run on a victory
+	 * @param loseAction action to run on a loss
+	 * @param stage main JavaFX stage
+	 * @param progress given the fraction of the board view built so far, or null
+	 */
+	public BoardContainer(Minefield board, int cellSize, Runnable winAction, Runnable loseAction, Stage stage,
+			DoubleConsumer progress) {
+		this.field = board;
+		if(board instanceof Board)
+			this.board = (Board)board;
+		this.undoBuffer = new Stack<Board>();
+		this.redoBuffer = new Stack<Board>();
 		this.winAction  = winAction;
 		this.loseAction = loseAction;
-		boardView = new GridPane();
-		boardView.setAlignment(Pos.CENTER);
 		
-		int[][] boardValues = board.getBoard();
-		for(int r = 0; r < board.getRows(); r++)
-			for(int c = 0; c < board.getCols(); c++) {
-				Cell cell = new Cell(boardValues[r][c], r, c, cellSize);
-				boardView.add(cell, c, r);
-			}
+		buildCells(cellSize, progress);
 	}
 	
 	/**
@@ -77,21 +127,51 @@ public class BoardContainer {
 	 */
 	public BoardContainer(File loadFile, int cellSize, Runnable winAction, Runnable loseAction, Stage stage) {
 	    loadFrom(loadFile);
-	    this.undoBuffer = new Stack<int[][]>();
-        this.redoBuffer = new Stack<int[][]>();
+	    this.undoBuffer = new Stack<Board>();
+        this.redoBuffer = new Stack<Board>();
         this.winAction  = winAction;
         this.loseAction = loseAction;
-        boardView = new GridPane();
-        boardView.setAlignment(Pos.CENTER);
         
         board.printBoard();
         
-        int[][] boardValues = board.getBoard();
-        for(int r = 0; r < board.getRows(); r++)
-            for(int c = 0; c < board.getCols(); c++) {
-                Cell cell = new Cell(boardValues[r][c], r, c, cellSize);
-                boardView.add(cell, c, r);
-            }
+        buildCells(cellSize, null);
+	}
+	
+	/**
+	 * Creates the Cells of the board view, or the canvas view for boards with more than
+	 * {@link #NODE_VIEW_LIMIT} cells or that are not a {@link Board}, and the hint engine
+	 * for a Board.
+	 * @param cellSize size of the cells
+	 * @param progress given the fraction of the board view built after each row, or null
+	 */
+	private void buildCells(int cellSize, DoubleConsumer progress) {
+		int rows = field.getRows(), cols = field.getCols();
+		this.cellSize = cellSize;
+		if(board == null || (long)rows * cols > NODE_VIEW_LIMIT) {
+			canvas = new CanvasView();
+			boardView = canvas;
+			if(progress != null)
+				progress.accept(1);
+		} else {
+			GridPane grid = new GridPane();
+			grid.setAlignment(Pos.CENTER);
+			cells = new Cell[rows * cols];
+			for(int r = 0; r < rows; r++) {
+				if(Thread.currentThread().isInterrupted())
+					throw new CancellationException("Board view construction cancelled.");
+				for(int c = 0; c < cols; c++) {
+					Cell cell = new Cell(board.getValue(r, c), r, c, cellSize);
+					cells[r * cols + c] = cell;
+					grid.add(cell, c, r);
+				}
+				if(progress != null)
+					progress.accept((r + 1.0) / rows);
+			}
+			boardView = grid;
+		}
+		if(board != null)
+			hints = new HintEngine(board);
+		update();
 	}
 	
 	/**
@@ -101,13 +181,31 @@ public class BoardContainer {
      * @param col col of cell to reveal
      */
 	public boolean reveal(int row, int col) {
-		redoBuffer.clear();
-		undoBuffer.push(copyArr(board.getViewMatrix()));
-		boolean result = board.reveal(row, col);
-		update();
+		Board before = beforeMove();
+		boolean result = field.reveal(row, col);
+		update(before);
 		return result;
 	}
 	
+	/**
+	 * Reveals the cell at the given row and column as a click on it does, ending the game
+	 * if a mine is hit or the board is cleared.
+	 * @param row row of cell to reveal
+	 * @param col col of cell to reveal
+	 */
+	private void play(int row, int col) {
+		boolean success = reveal(row, col);
+		if(!success) {
+			finished = true;
+			loseAction.run();
+			disableAll();
+		} else if(field.isWon()) {
+			finished = true;
+			winAction.run();
+			disableAll();
+		}
+	}
+	
 	/**
 	 * Flags the cell in the board at the given row and column.
 	 * calls {@link Board#flag(int, int) flag(row, col)} in the internal Board.
@@ -115,10 +213,73 @@ public class BoardContainer {
 	 * @param col col of cell to flag
 	 */
 	public void flag(int row, int col) {
+		Board before = beforeMove();
+		field.flag(row, col);
+		update(before);
+	}
+	
+	/**
+	 * Counts a move, starting the game clock on the first, and pushes a fork of the board
+	 * onto the undo history.
+	 * @return fork of the board before the move, or null if the board is not a Board
+	 */
+	private Board beforeMove() {
+		if(moves++ == 0)
+			startTime = System.currentTimeMillis();
 		redoBuffer.clear();
-		undoBuffer.push(copyArr(board.getViewMatrix()));
-		board.flag(row, col);
-		update();
+		if(board == null)
+			return null;
+		Board before = board.fork();
+		undoBuffer.push(before);
+		return before;
+	}
+	
+	/**
+	 * Gets the number of reveals and flags since the game was started or restarted.
+	 * @return number of moves
+	 */
+	public int getMoves() {
+		return moves;
+	}
+	
+	/**
+	 * Gets the time since the first move of the game.
+	 * @return time since the first move in ms, or 0 if no move was made
+	 */
+	public long getElapsedMillis() {
+		return moves == 0 ? 0 : System.currentTimeMillis() - startTime;
+	}
+	
+	/**
+	 * Resumes a game from a saved session, restoring the head of its undo history and its
+	 * game clock.
+	 * @param undoHead fork of the board before the last move, or null if there is none
+	 * @param moves number of moves made
+	 * @param elapsedMillis time on the game clock in ms
+	 */
+	public void resume(Board undoHead, int moves, long elapsedMillis) {
+		undoBuffer.clear();
+		redoBuffer.clear();
+		if(undoHead != null)
+			undoBuffer.push(undoHead);
+		this.moves = moves;
+		this.startTime = System.currentTimeMillis() - elapsedMillis;
+	}
+	
+	/**
+	 * Gets the board as it was before the most recent move.
+	 * @return fork of the board before the last move, or null if there is nothing to undo
+	 */
+	public Board getUndoHead() {
+		return undoBuffer.isEmpty() ? null : undoBuffer.peek();
+	}
+	
+	/**
+	 * Returns true if the game was won or lost, and has not been restarted since.
+	 * @return true if the game is over
+	 */
+	public boolean isFinished() {
+		return finished;
 	}
 	
 	/**
@@ -127,9 +288,10 @@ public class BoardContainer {
 	public void undo() {
 		if(undoBuffer.isEmpty())
 			return;
-		redoBuffer.push(board.getViewMatrix());
-		board.setViewMatrix(undoBuffer.pop());
-		update();
+		Board before = board.fork();
+		redoBuffer.push(before);
+		board.restore(undoBuffer.pop());
+		update(before);
 	}
 	
 	/**
@@ -138,19 +300,27 @@ public class BoardContainer {
 	public void redo() {
 		if(redoBuffer.isEmpty())
 			return;
-		undoBuffer.push(board.getViewMatrix());
-		board.setViewMatrix(redoBuffer.pop());
-		update();
+		Board before = board.fork();
+		undoBuffer.push(before);
+		board.restore(redoBuffer.pop());
+		update(before);
 	}
 	
 	/**
-	 * Restarts the game by reseting the view matrix.
+	 * Restarts the game by reseting the view matrix. Does nothing if the board is not a
+	 * {@link Board}.
 	 */
 	public void restart() {
+		if(board == null)
+			return;
+		moves = 0;
+		finished = false;
 		undoBuffer.clear();
 		redoBuffer.clear();
-		board.setViewMatrix(new int[board.getRows()][board.getCols()]);
-		update();
+		Board before = board.fork();
+		board.clearView();
+		hints.reset();
+		update(before);
 	}
 	
 	/**
@@ -159,10 +329,38 @@ public class BoardContainer {
 	 * @param height new height of board view in px
 	 */
 	public void resize(double width, double height) {
-		int size = (int)Math.min(width / board.getCols(), height / board.getRows());
-		for(Node n : boardView.getChildren()) {
-			((Cell)n).resize(size);
+		int size = cellSize(field.getRows(), field.getCols(), width, height);
+		if(size == cellSize)
+			return;
+		cellSize = size;
+		if(canvas != null) {
+			canvas.requestLayout();
+			return;
 		}
+		for(Cell cell : cells) {
+			cell.resize(size);
+		}
+	}
+	
+	/**
+	 * Gets the size of the Cells of a board view with the given number of rows and cols
+	 * that fits in the given width and height, in pixels.
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param width width of board view in px
+	 * @param height height of board view in px
+	 * @return size of the Cells in px
+	 */
+	public static int cellSize(int rows, int cols, double width, double height) {
+		return Math.max(MIN_CELL_SIZE, (int)Math.min(width / cols, height / rows));
+	}
+	
+	/**
+	 * Gets the size of the Cells in the board view.
+	 * @return size of the Cells in px
+	 */
+	public int getCellSize() {
+		return cellSize;
 	}
 	
 	/**
@@ -174,13 +372,18 @@ public class BoardContainer {
 	}
 	
 	/**
-	 * Save the current board to a FX Minesweeper save game file.
+	 * Save the current board to a FX Minesweeper save game file. The name of the topology
+	 * follows the cells; only the built-in topologies can be saved, see {@link Topology#builtIn()}.
 	 * @param saveFile file to save to
-	 * @return false if the save could not be created, true otherwise
+	 * @return false if the save could not be created or the board is not a {@link Board}, true otherwise
 	 */
 	public boolean saveToFile(File saveFile) {
-	    if(saveFile == null)
+	    if(saveFile == null || board == null)
+	        return false;
+	    if(Topology.forName(board.getTopology().getName()) != board.getTopology()) {
+	        System.err.println("Cannot save a board with the custom topology " + board.getTopology() + ".");
 	        return false;
+	    }
 	    
 	    if(saveFile.exists())
 	        saveFile.delete();
@@ -203,9 +406,9 @@ public class BoardContainer {
 	        String mines = "", shown = "", flags = "", qmark = "";
 	        
 	        for(int i = 0; i < rows * cols; i++) {
-	            if(board.getBoard()[i / cols][i % rows] == Board.MINE)
+	            if(board.getValue(i / cols, i % cols) == Board.MINE)
 	                mines += (char)i;
-	            switch(board.getViewMatrix()[i / cols][i % rows]) {
+	            switch(board.getView(i / cols, i % cols)) {
 	            case Board.SHOWN:
 	                shown += (char)i;
 	                break;
@@ -225,6 +428,8 @@ public class BoardContainer {
             writer.write(flags);
             writer.newLine();
             writer.write(qmark);
+            writer.newLine();
+            writer.write(board.getTopology().getName());
             
 	    } catch (IOException e) {
             e.printStackTrace();
@@ -250,12 +455,20 @@ public class BoardContainer {
 	        String shown = reader.readLine();
 	        String flags = reader.readLine();
 	        String qmark = reader.readLine();
+	        String topologyName = reader.readLine();
 	        
 	        if(mines == null || shown == null || flags == null || qmark == null) {
 	            System.err.println("Invalid FX Minesweeper Save Game: One or more missing lines.");
                 return false;
 	        }
 	        
+	        // Saves from before topologies end after the question marks.
+	        Topology topology = topologyName == null ? Topology.SQUARE : Topology.forName(topologyName);
+	        if(topology == null) {
+	            System.err.println("Invalid FX Minesweeper Save Game: Unknown topology " + topologyName + ".");
+	            return false;
+	        }
+	        
 	        int rows = size.charAt(0), cols = size.charAt(1);
 	        
 	        int[][] boardArr = new int[rows][cols];
@@ -266,7 +479,8 @@ public class BoardContainer {
             parseSaveLine(flags, rows, cols, Board.FLAGGED, viewMatrix);
             parseSaveLine(qmark, rows, cols, Board.QMARK, viewMatrix);
             
-            board = new Board(boardArr, viewMatrix, mines.length());
+            board = new Board(boardArr, viewMatrix, mines.length(), topology);
+            field = board;
 	        
 	        saveFile = loadFile;
 	        
@@ -292,48 +506,162 @@ public class BoardContainer {
 	private void parseSaveLine(String line, int rows, int cols, int value, int[][] arr) {
 	    for(int i = 0; i < line.length(); i++) {
             int coord = line.charAt(i);
-            arr[coord / cols][coord % rows] = value;
+            arr[coord / cols][coord % cols] = value;
         }
 	}
 	
 	/**
-	 * Returns a copy of a 2D array.
-	 * @param arr array to copy
-	 * @return copy of the array
+	 * Highlights a cell that is certainly safe, if the hint engine knows one.
+	 * @return false if no safe cell is known, true otherwise
 	 */
-	private int[][] copyArr(int[][] arr) {
-		int[][] copy = new int[arr.length][];
-		for(int i = 0; i < copy.length; i++)
-			copy[i] = arr[i].clone();
-		return copy;
+	public boolean hint() {
+		if(hints == null)
+			return false;
+		int cell = hints.nextSafe();
+		if(cell < 0)
+			return false;
+		highlight(cell);
+		return true;
+	}
+	
+	/**
+	 * Moves the hint highlight to the given cell, or clears it if -1.
+	 * @param cell cell to highlight (row * cols + col)
+	 */
+	private void highlight(int cell) {
+		int old = hinted;
+		hinted = cell;
+		if(canvas != null) {
+			if(old >= 0)
+				canvas.draw(old);
+			if(cell >= 0)
+				canvas.draw(cell);
+		} else {
+			if(old >= 0)
+				cells[old].setHinted(false);
+			if(cell >= 0)
+				cells[cell].setHinted(true);
+		}
 	}
 	
 	/**
 	 * Updates all Cells in the board view.
 	 */
 	private void update() {
-		for(Node n : boardView.getChildren()) {
-			((Cell)n).update();
+		if(canvas != null) {
+			canvas.draw();
+			return;
+		}
+		for(Cell cell : cells) {
+			cell.update();
 		}
 	}
 	
+	/**
+	 * Updates the Cells and the hint engine for the cells that changed since the
+	 * given fork of the board. Without a fork, the canvas view is redrawn instead and
+	 * the change listeners are not run.
+	 * @param before fork of the board taken before the change, or null
+	 */
+	private void update(Board before) {
+		highlight(-1);
+		if(before == null) {
+			canvas.draw();
+			for(Runnable listener : moveListeners)
+				listener.run();
+			return;
+		}
+		board.diff(before, (cell) -> { // public void accept(int cell)
+			if(canvas != null)
+				canvas.draw(cell);
+			else
+				cells[cell].update();
+			hints.changed(cell);
+			for(IntConsumer listener : changeListeners)
+				listener.accept(cell);
+		});
+		hints.solve();
+		for(Runnable listener : moveListeners)
+			listener.run();
+	}
+	
+	/**
+	 * Adds a listener that is given each cell (row * cols + col) whose view value changes.
+	 * Listeners run on the JavaFX thread after each move, undo, redo or restart, and only
+	 * for a {@link Board}, since other boards do not report the cells a move changed.
+	 * @param listener listener to add
+	 */
+	public void addChangeListener(IntConsumer listener) {
+		changeListeners.add(listener);
+	}
+	
+	/**
+	 * Adds a listener that is run after each move, undo, redo or restart, once the change
+	 * listeners have been given all the cells that changed.
+	 * @param listener listener to add
+	 */
+	public void addMoveListener(Runnable listener) {
+		moveListeners.add(listener);
+	}
+	
 	/**
 	 * Disables all Cells in the board view.
 	 */
 	private void disableAll() {
-		for(Node n : boardView.getChildren()) {
-			((Cell)n).disable();
+		if(canvas != null) {
+			canvas.disable();
+			return;
+		}
+		for(Cell cell : cells) {
+			cell.disable();
 		}
 	}
 	
 	/**
-	 * Returns the board view GridPane
+	 * Returns the board view, a GridPane of Cells or, for boards with more than
+	 * {@link #NODE_VIEW_LIMIT} cells, a canvas view
 	 * @return the board view
 	 */
-	public GridPane getBoardView() {
+	public Region getBoardView() {
 		return boardView;
 	}
 	
+	/**
+	 * Returns true if the board view is a canvas view, which scrolls itself instead of
+	 * being scrolled by the ScrollPane around it.
+	 * @return true for a canvas view
+	 */
+	public boolean isVirtual() {
+		return canvas != null;
+	}
+	
+	/**
+	 * Gets the part of the board a canvas view shows, as fractions of the board size.
+	 * @return the viewport, or the whole board for a GridPane view
+	 */
+	public Rectangle2D getViewport() {
+		return canvas != null ? canvas.getViewport() : new Rectangle2D(0, 0, 1, 1);
+	}
+	
+	/**
+	 * Scrolls a canvas view so it is centred on the given point, as fractions of the board
+	 * width and height. Does nothing for a GridPane view.
+	 * @param x fraction of the board width
+	 * @param y fraction of the board height
+	 */
+	public void scrollTo(double x, double y) {
+		if(canvas != null)
+			canvas.scrollTo(x, y);
+	}
+	
+	/**
+	 * Adds a listener that is run when a canvas view is scrolled or resized.
+	 * @param listener listener to add
+	 */
+	public void addViewportListener(Runnable listener) {
+		viewportListeners.add(listener);
+	}
+	
 	/**
 	 * A class that defines the cells used for the board view.
 	 * Each Cell is a StackPane containing a Rectangle, a Button, and Text object.
@@ -377,16 +705,8 @@ public class BoardContainer {
 			button.setOpacity(0.8);
 			button.setOnMouseClicked((mouseEvent) -> { // public void handle(MouseEvent mouseEvent)
 				if(mouseEvent.getButton() == MouseButton.PRIMARY) {
-					if(!disable) {
-						boolean success = reveal(row, col);
-						if(!success) {
-							loseAction.run();
-							disableAll();
-						} else if(board.isWon()) {
-							winAction.run();
-							disableAll();
-						}
-					}
+					if(!disable)
+						play(row, col);
 				} else {
 					flag(row, col);
 				}
@@ -399,7 +719,7 @@ public class BoardContainer {
 		 * Refreshes the view status of the Cell (Shown, Hidden, etc).
 		 */
 		public void update() {
-			switch(board.getViewMatrix()[row][col]) {
+			switch(board.getView(row, col)) {
 			case Board.HIDDEN: 
 				button.setText("");
 				disable = false;
@@ -421,6 +741,14 @@ public class BoardContainer {
 			}
 		}
 		
+		/**
+		 * Sets whether the Cell is highlighted as a hint.
+		 * @param hinted true to highlight the Cell
+		 */
+		public void setHinted(boolean hinted) {
+			button.setStyle(hinted ? "-fx-base: palegreen;" : "");
+		}
+		
 		/**
 		 * Disables the Cell.
 		 */
@@ -445,11 +773,194 @@ public class BoardContainer {
 		
 	}
 	
+	/**
+	 * The board view of boards with more than {@link #NODE_VIEW_LIMIT} cells. Only the cells
+	 * in the viewport are drawn, on a canvas the size of the viewport, so its memory and the
+	 * time to draw it grow with the window rather than the board. It has scroll bars of its
+	 * own, since a ScrollPane would need content the size of the board.
+	 * 
+	 * Hidden cells are drawn grey, with F or ? when flagged or question marked, and shown
+	 * cells as in a Cell.
+	 */
+	class CanvasView extends Region {
+		
+		private Canvas view = new Canvas();
+		private ScrollBar hbar = new ScrollBar(), vbar = new ScrollBar();
+		private boolean disable;
+		
+		/**
+		 * Creates an empty canvas view. It is drawn once it is laid out.
+		 */
+		public CanvasView() {
+			vbar.setOrientation(Orientation.VERTICAL);
+			ChangeListener<Number> scrolled = (observable, oldValue, newValue) -> { // public void changed(...)
+				draw();
+				for(Runnable listener : viewportListeners)
+					listener.run();
+			};
+			hbar.valueProperty().addListener(scrolled);
+			vbar.valueProperty().addListener(scrolled);
+			
+			GraphicsContext g = view.getGraphicsContext2D();
+			g.setTextAlign(TextAlignment.CENTER);
+			g.setTextBaseline(VPos.CENTER);
+			
+			view.setOnMouseClicked((mouseEvent) -> { // public void handle(MouseEvent mouseEvent)
+				long row = (long)((mouseEvent.getY() + vbar.getValue()) / cellSize);
+				long col = (long)((mouseEvent.getX() + hbar.getValue()) / cellSize);
+				if(disable || row >= field.getRows() || col >= field.getCols())
+					return;
+				if(mouseEvent.getButton() == MouseButton.PRIMARY) {
+					int state = field.getView((int)row, (int)col);
+					if(state != Board.FLAGGED && state != Board.QMARK)
+						play((int)row, (int)col);
+				} else {
+					flag((int)row, (int)col);
+				}
+			});
+			setOnScroll((scrollEvent) -> { // public void handle(ScrollEvent scrollEvent)
+				hbar.setValue(clamp(hbar.getValue() - scrollEvent.getDeltaX(), hbar.getMax()));
+				vbar.setValue(clamp(vbar.getValue() - scrollEvent.getDeltaY(), vbar.getMax()));
+				scrollEvent.consume();
+			});
+			
+			getChildren().addAll(view, hbar, vbar);
+			setMinSize(0, 0);
+		}
+		
+		@Override
+		protected void layoutChildren() {
+			double barWidth = vbar.prefWidth(-1), barHeight = hbar.prefHeight(-1);
+			double width = Math.max(0, getWidth() - barWidth), height = Math.max(0, getHeight() - barHeight);
+			view.setWidth(width);
+			view.setHeight(height);
+			hbar.resizeRelocate(0, height, width, barHeight);
+			vbar.resizeRelocate(width, 0, barWidth, height);
+			setRange(hbar, (double)cellSize * field.getCols(), width);
+			setRange(vbar, (double)cellSize * field.getRows(), height);
+			draw();
+			for(Runnable listener : viewportListeners)
+				listener.run();
+		}
+		
+		/**
+		 * Sets the range of a scroll bar to the part of the content that does not fit.
+		 */
+		private void setRange(ScrollBar bar, double content, double visible) {
+			double max = Math.max(0, content - visible);
+			bar.setMax(max);
+			bar.setVisibleAmount(content > 0 ? max * visible / content : 0);
+			bar.setUnitIncrement(cellSize);
+			bar.setBlockIncrement(visible);
+			bar.setValue(clamp(bar.getValue(), max));
+		}
+		
+		private double clamp(double value, double max) {
+			return Math.max(0, Math.min(max, value));
+		}
+		
+		/**
+		 * Draws every cell in the viewport.
+		 */
+		public void draw() {
+			GraphicsContext g = view.getGraphicsContext2D();
+			g.clearRect(0, 0, view.getWidth(), view.getHeight());
+			g.setFont(Font.font("Arial", FontWeight.BOLD, (int)(0.75 * cellSize)));
+			long firstRow = (long)(vbar.getValue() / cellSize), firstCol = (long)(hbar.getValue() / cellSize);
+			long lastRow = Math.min(field.getRows() - 1, (long)((vbar.getValue() + view.getHeight()) / cellSize));
+			long lastCol = Math.min(field.getCols() - 1, (long)((hbar.getValue() + view.getWidth()) / cellSize));
+			for(long r = firstRow; r <= lastRow; r++)
+				for(long c = firstCol; c <= lastCol; c++)
+					draw(g, (int)r, (int)c);
+		}
+		
+		/**
+		 * Draws a cell if it is in the viewport.
+		 * @param cell cell to draw (row * cols + col)
+		 */
+		public void draw(int cell) {
+			draw(view.getGraphicsContext2D(), cell / field.getCols(), cell % field.getCols());
+		}
+		
+		private void draw(GraphicsContext g, int row, int col) {
+			double x = (double)col * cellSize - hbar.getValue(), y = (double)row * cellSize - vbar.getValue();
+			if(x + cellSize <= 0 || y + cellSize <= 0 || x >= view.getWidth() || y >= view.getHeight())
+				return;
+			int state = field.getView(row, col);
+			if(state == Board.SHOWN) {
+				g.setFill(Color.AZURE);
+				g.fillRect(x, y, cellSize, cellSize);
+				int value = field.getValue(row, col);
+				if(value != 0) {
+					g.setFill(cellTextColor[value + 1]);
+					g.fillText("" + value, x + cellSize / 2.0, y + cellSize / 2.0);
+				}
+				return;
+			}
+			g.setFill((long)row * field.getCols() + col == hinted ? Color.PALEGREEN : disable ? Color.GAINSBORO : Color.LIGHTGRAY);
+			g.fillRect(x, y, cellSize, cellSize);
+			g.setStroke(Color.GRAY);
+			g.strokeRect(x + 0.5, y + 0.5, cellSize - 1, cellSize - 1);
+			if(state != Board.HIDDEN) {
+				g.setFill(Color.BLACK);
+				g.fillText(state == Board.FLAGGED ? "F" : "?", x + cellSize / 2.0, y + cellSize / 2.0);
+			}
+		}
+		
+		/**
+		 * Gets the part of the board in the viewport, as fractions of the board size.
+		 * @return the viewport
+		 */
+		public Rectangle2D getViewport() {
+			double width = (double)cellSize * field.getCols(), height = (double)cellSize * field.getRows();
+			return new Rectangle2D(hbar.getValue() / width, vbar.getValue() / height,
+					Math.min(1, view.getWidth() / width), Math.min(1, view.getHeight() / height));
+		}
+		
+		/**
+		 * Scrolls so the viewport is centred on the given point, as fractions of the board
+		 * width and height.
+		 * @param x fraction of the board width
+		 * @param y fraction of the board height
+		 */
+		public void scrollTo(double x, double y) {
+			hbar.setValue(clamp(x * cellSize * field.getCols() - view.getWidth() / 2, hbar.getMax()));
+			vbar.setValue(clamp(y * cellSize * field.getRows() - view.getHeight() / 2, vbar.getMax()));
+		}
+		
+		/**
+		 * Disables the view, so clicks are ignored.
+		 */
+		public void disable() {
+			disable = true;
+			draw();
+		}
+		
+	}
+	
 	/**
 	 * Gets the board
-	 * @return the board
+	 * @return the board, or null if it is not a {@link Board}
 	 */
 	public Board getBoard() {
 		return board;
 	}
+	
+	/**
+	 * Gets the board, whatever kind it is.
+	 * @return the board
+	 */
+	public Minefield getField() {
+		return field;
+	}
+	
+	/**
+	 * Closes the board if it is kept in a file, see {@link MappedBoard}, deleting the file
+	 * if it is a temporary one.
+	 * @throws IOException if the board cannot be written back
+	 */
+	public void close() throws IOException {
+		if(field instanceof Closeable)
+			((Closeable)field).close();
+	}
 }
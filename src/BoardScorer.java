@@ -0,0 +1,118 @@
+/**
+ * Rates the difficulty of a Board by its 3BV, the minimum number of clicks needed to clear
+ * it without flagging: one click per opening (connected area of zeros, together with the
+ * numbers around it) plus one click per number that does not touch an opening.
+ *
+ * Openings are labelled with a union-find over the zero cells in a single sweep of the
+ * mines board, following the neighbours of the board's {@link Topology}, so boards of any
+ * topology are scored. The union-find array and the neighbour buffer are reused between
+ * boards, so scoring a board of the same or a smaller size does not allocate.
+ */
+public class BoardScorer {
+
+	private int[] parent = new int[0];
+	private int[] around;
+	private int threeBV, openings, isolated;
+
+	/**
+	 * Creates a scorer, with a neighbour buffer for the built-in topologies.
+	 */
+	public BoardScorer() {
+		int degree = 0;
+		for (Topology topology : new Topology[] { Topology.SQUARE, Topology.TORUS, Topology.HEX, Topology.KNIGHT })
+			degree = Math.max(degree, topology.getMaxDegree());
+		around = new int[degree];
+	}
+
+	/**
+	 * Scores the given board. The results are read with the getters.
+	 * @param board board to score
+	 */
+	public void score(Board board) {
+		int[] values = board.getValues();
+		Topology.Adjacency adjacency = board.getAdjacency();
+		if (around.length < adjacency.getMaxDegree())
+			around = new int[adjacency.getMaxDegree()];
+		if (parent.length < values.length)
+			parent = new int[values.length];
+
+		int zeros = 0, unions = 0;
+		isolated = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == 0) {
+				// Link to the zero neighbours already visited.
+				parent[i] = i;
+				zeros++;
+				for (int k = 0, count = adjacency.neighbours(i, around); k < count; k++) {
+					int n = around[k];
+					if (n < i && values[n] == 0 && union(i, n))
+						unions++;
+				}
+			} else if (values[i] != Board.MINE && !touchesZero(values, adjacency, i)) {
+				isolated++;
+			}
+		}
+		openings = zeros - unions;
+		threeBV = openings + isolated;
+	}
+
+	/**
+	 * Merges the sets of two cells.
+	 * @return true if they were in different sets
+	 */
+	private boolean union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b)
+			return false;
+		if (a < b)
+			parent[b] = a;
+		else
+			parent[a] = b;
+		return true;
+	}
+
+	/**
+	 * Finds the root of a cell's set, halving the path on the way.
+	 */
+	private int find(int i) {
+		while (parent[i] != i)
+			i = parent[i] = parent[parent[i]];
+		return i;
+	}
+
+	/**
+	 * Checks whether any neighbour of a cell is a zero.
+	 */
+	private boolean touchesZero(int[] values, Topology.Adjacency adjacency, int i) {
+		for (int k = 0, count = adjacency.neighbours(i, around); k < count; k++)
+			if (values[around[k]] == 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Gets the 3BV of the last board scored.
+	 * @return 3BV
+	 */
+	public int get3BV() {
+		return threeBV;
+	}
+
+	/**
+	 * Gets the number of openings of the last board scored.
+	 * @return number of openings
+	 */
+	public int getOpenings() {
+		return openings;
+	}
+
+	/**
+	 * Gets the number of isolated numbers (numbers not next to an opening) of the last
+	 * board scored.
+	 * @return number of isolated numbers
+	 */
+	public int getIsolated() {
+		return isolated;
+	}
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+
+/**
+ * The mine constraints a player can see on a Board. Every cell that is not shown is
+ * an unknown, and every shown cell next to an unknown is a constraint saying how many of
+ * its unknown neighbours are mines. Unknowns with at least one constraint make up the
+ * frontier and come first in the unknown ordering; the rest are interior cells.
+ *
+ * Flags and question marks are treated as unknowns, since the player may have placed
+ * them wrongly.
+ */
+public class Frontier {
+
+	private static final int[] NONE = new int[0];
+
+	private int rows, cols, mines;
+	private Topology.Adjacency adjacency;
+	private int[] around;
+	private int[] unknowns, positions;
+	private int[][] constraintCells, cellConstraints;
+	private int[] constraintMines, constraintOrigins;
+	private int frontierSize;
+
+	/**
+	 * Builds the constraints visible on the given board.
+	 * @param board board to read
+	 */
+	public Frontier(Board board) {
+		this.rows = board.getRows();
+		this.cols = board.getCols();
+		this.mines = board.getMines();
+		this.adjacency = board.getAdjacency();
+		this.around = new int[adjacency.getMaxDegree()];
+
+		positions = new int[rows * cols];
+		Arrays.fill(positions, -1);
+
+		int constraints = 0, unknownCount = 0;
+		for (int r = 0; r < rows; r++)
+			for (int c = 0; c < cols; c++) {
+				if (board.getView(r, c) != Board.SHOWN)
+					unknownCount++;
+				else if (hiddenNeighbours(board, r, c) > 0)
+					constraints++;
+			}
+
+		constraintCells = new int[constraints][];
+		constraintMines = new int[constraints];
+		constraintOrigins = new int[constraints];
+		int[] degree = new int[unknownCount + 1];
+		unknowns = new int[unknownCount];
+
+		// Number the frontier cells first, in the order their constraints find them.
+		int k = 0;
+		for (int r = 0; r < rows; r++)
+			for (int c = 0; c < cols; c++) {
+				if (board.getView(r, c) != Board.SHOWN)
+					continue;
+				int count = hiddenNeighbours(board, r, c);
+				if (count == 0)
+					continue;
+				int[] cells = new int[count];
+				int n = 0;
+				for (int j = 0, m = adjacency.neighbours(r * cols + c, around); j < m; j++) {
+					int cell = around[j];
+					if (board.getView(cell / cols, cell % cols) == Board.SHOWN)
+						continue;
+					if (positions[cell] < 0) {
+						positions[cell] = frontierSize;
+						unknowns[frontierSize++] = cell;
+					}
+					cells[n++] = positions[cell];
+					degree[positions[cell]]++;
+				}
+				constraintCells[k] = cells;
+				constraintOrigins[k] = r * cols + c;
+				constraintMines[k++] = board.getValue(r, c);
+			}
+
+		int next = frontierSize;
+		for (int cell = 0; cell < rows * cols; cell++)
+			if (positions[cell] < 0 && board.getView(cell / cols, cell % cols) != Board.SHOWN) {
+				positions[cell] = next;
+				unknowns[next++] = cell;
+			}
+
+		cellConstraints = new int[unknownCount][];
+		for (int i = 0; i < unknownCount; i++)
+			cellConstraints[i] = degree[i] == 0 ? NONE : new int[degree[i]];
+		int[] fill = new int[unknownCount];
+		for (int i = 0; i < constraints; i++)
+			for (int cell : constraintCells[i])
+				cellConstraints[cell][fill[cell]++] = i;
+	}
+
+	/**
+	 * Counts the neighbours of a cell that are not shown.
+	 */
+	private int hiddenNeighbours(Board board, int r, int c) {
+		int count = 0;
+		for (int j = 0, n = adjacency.neighbours(r * cols + c, around); j < n; j++)
+			if (board.getView(around[j] / cols, around[j] % cols) != Board.SHOWN)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Gets the number of unknown cells.
+	 * @return number of unknowns
+	 */
+	public int getUnknownCount() {
+		return unknowns.length;
+	}
+
+	/**
+	 * Gets the number of unknowns with at least one constraint. These are numbered
+	 * 0 to getFrontierSize() - 1.
+	 * @return frontier size
+	 */
+	public int getFrontierSize() {
+		return frontierSize;
+	}
+
+	/**
+	 * Gets the board cell (row * cols + col) of an unknown.
+	 * @param unknown number of the unknown
+	 * @return board cell of the unknown
+	 */
+	public int getCell(int unknown) {
+		return unknowns[unknown];
+	}
+
+	/**
+	 * Gets the unknown number of a board cell.
+	 * @param cell board cell (row * cols + col)
+	 * @return number of the unknown, or -1 if the cell is shown
+	 */
+	public int getUnknown(int cell) {
+		return positions[cell];
+	}
+
+	/**
+	 * Gets the number of constraints.
+	 * @return number of constraints
+	 */
+	public int getConstraintCount() {
+		return constraintMines.length;
+	}
+
+	/**
+	 * Gets the unknowns covered by a constraint.
+	 * @param constraint number of the constraint
+	 * @return unknowns of the constraint
+	 */
+	public int[] getConstraintCells(int constraint) {
+		return constraintCells[constraint];
+	}
+
+	/**
+	 * Gets the number of mines among the unknowns of a constraint.
+	 * @param constraint number of the constraint
+	 * @return mines of the constraint
+	 */
+	public int getConstraintMines(int constraint) {
+		return constraintMines[constraint];
+	}
+
+	/**
+	 * Gets the board cell (row * cols + col) of the shown number a constraint comes from.
+	 * @param constraint number of the constraint
+	 * @return board cell of the constraint
+	 */
+	public int getConstraintCell(int constraint) {
+		return constraintOrigins[constraint];
+	}
+
+	/**
+	 * Gets the constraints covering an unknown. Interior cells have none.
+	 * @param unknown number of the unknown
+	 * @return constraints of the unknown
+	 */
+	public int[] getCellConstraints(int unknown) {
+		return cellConstraints[unknown];
+	}
+
+	/**
+	 * Gets the total number of mines, all of which are among the unknowns.
+	 * @return number of mines
+	 */
+	public int getMines() {
+		return mines;
+	}
+
+	/**
+	 * Gets the number of rows in the board.
+	 * @return number of rows
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Gets the number of cols in the board.
+	 * @return number of cols
+	 */
+	public int getCols() {
+		return cols;
+	}
+}
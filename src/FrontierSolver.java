@@ -0,0 +1,568 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes exact mine probabilities for a Board by enumerating each independent frontier
+ * component on its own. Two frontier cells are in the same component if a chain of constraints
+ * connects them, so components can be enumerated in parallel and combined afterwards through
+ * the total mine count.
+ *
+ * Each component is sent to a fork-join task. Results are cached under the shape of the
+ * component (its unknown cells and numbers, relative to its top-left corner), so a shape
+ * that comes up again, later in the game or in another game, is not enumerated again. The
+ * cache is shared by all solvers and drops the least recently used shapes when full.
+ *
+ * Components too large to enumerate in time make the whole position fall back to
+ * {@link MineSampler}.
+ */
+public class FrontierSolver {
+
+	/**
+	 * Number of component shapes kept in the cache.
+	 */
+	private static final int CACHE_SIZE = 4096;
+
+	/**
+	 * Search nodes a component may use before it counts as too large to enumerate.
+	 */
+	private static final long MAX_NODES = 1L << 20;
+
+	/**
+	 * Time given to the sampler when the position cannot be enumerated.
+	 */
+	private static final long FALLBACK_MILLIS = 250;
+
+	/**
+	 * Feature kind of a constraint covering a cell, used for shapes on topologies other than
+	 * the square grid. Other kinds are 0 for an unknown and 1 + mines for a constraint.
+	 */
+	private static final int INCIDENCE = 1 << 11;
+
+	private static final Map<Shape, Counts> cache = new LinkedHashMap<Shape, Counts>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Shape, Counts> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Cached in place of the counts of a shape that is too large to enumerate.
+	 */
+	private static final Counts TOO_LARGE = new Counts(0);
+
+	private static long totalHits, totalLookups;
+
+	private Board board;
+	private Frontier frontier;
+
+	/**
+	 * Creates a solver for the current position of the given board.
+	 * @param board board to solve
+	 */
+	public FrontierSolver(Board board) {
+		this.board = board;
+		this.frontier = new Frontier(board);
+	}
+
+	/**
+	 * Solves the position.
+	 * @return mine probabilities and cache statistics for the position
+	 */
+	public Result solve() {
+		long start = System.nanoTime();
+		List<Component> components = components();
+		List<RecursiveTask<Counts>> tasks = new ArrayList<RecursiveTask<Counts>>();
+		for (Component component : components) {
+			tasks.add(new RecursiveTask<Counts>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected Counts compute() {
+					return component.solve();
+				}
+			});
+		}
+		for (RecursiveTask<Counts> task : tasks)
+			ForkJoinPool.commonPool().execute(task);
+
+		Counts[] counts = new Counts[tasks.size()];
+		int hits = 0;
+		boolean exact = true;
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = tasks.get(i).join();
+			if (components.get(i).hit)
+				hits++;
+			if (counts[i] == null)
+				exact = false;
+		}
+		synchronized (cache) {
+			totalHits += hits;
+			totalLookups += counts.length;
+		}
+
+		double[] probabilities = exact ? combine(components, counts) : sample();
+		return new Result(probabilities, exact, hits, counts.length, System.nanoTime() - start);
+	}
+
+	/**
+	 * Splits the frontier into components, joining the cells of each constraint.
+	 */
+	private List<Component> components() {
+		int size = frontier.getFrontierSize();
+		int[] parent = new int[size];
+		for (int i = 0; i < size; i++)
+			parent[i] = i;
+		for (int k = 0; k < frontier.getConstraintCount(); k++) {
+			int[] cells = frontier.getConstraintCells(k);
+			for (int i = 1; i < cells.length; i++) {
+				int a = find(parent, cells[0]), b = find(parent, cells[i]);
+				if (a != b)
+					parent[Math.max(a, b)] = Math.min(a, b);
+			}
+		}
+
+		Map<Integer, Component> roots = new LinkedHashMap<Integer, Component>();
+		for (int i = 0; i < size; i++) {
+			int root = find(parent, i);
+			Component component = roots.get(root);
+			if (component == null)
+				roots.put(root, component = new Component());
+			component.unknowns.add(i);
+		}
+		for (int k = 0; k < frontier.getConstraintCount(); k++)
+			roots.get(find(parent, frontier.getConstraintCells(k)[0])).constraints.add(k);
+		return new ArrayList<Component>(roots.values());
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i)
+			i = parent[i] = parent[parent[i]];
+		return i;
+	}
+
+	/**
+	 * Combines the component counts through the total mine count. A total of k frontier mines
+	 * leaves C(interior, mines - k) ways to place the rest, which is weighted in log space
+	 * since it easily overflows a double.
+	 */
+	private double[] combine(List<Component> components, Counts[] counts) {
+		int n = counts.length, interior = frontier.getUnknownCount() - frontier.getFrontierSize();
+		int mines = frontier.getMines();
+
+		// prefix[i] is the convolution of the components before i.
+		double[][] prefix = new double[n + 1][];
+		prefix[0] = new double[] { 1 };
+		for (int i = 0; i < n; i++)
+			prefix[i + 1] = convolve(prefix[i], counts[i].ways);
+
+		int maxFrontier = prefix[n].length - 1;
+		double[] weight = new double[maxFrontier + 1];
+		double[] logC = new double[maxFrontier + 1];
+		double best = Double.NEGATIVE_INFINITY, log = Double.NaN;
+		for (int k = maxFrontier; k >= 0; k--) {
+			int m = mines - k;
+			if (m < 0 || m > interior) {
+				logC[k] = Double.NEGATIVE_INFINITY;
+				continue;
+			}
+			// Step from C(interior, m - 1) to C(interior, m) instead of starting over.
+			log = Double.isNaN(log) ? logChoose(interior, m) : log + Math.log((double) (interior - m + 1) / m);
+			logC[k] = log;
+			best = Math.max(best, log);
+		}
+		for (int k = 0; k <= maxFrontier; k++)
+			weight[k] = Math.exp(logC[k] - best);
+
+		double total = 0, interiorMines = 0;
+		for (int k = 0; k <= maxFrontier; k++) {
+			total += prefix[n][k] * weight[k];
+			interiorMines += prefix[n][k] * weight[k] * (mines - k);
+		}
+
+		// Walking back from the last component, after[a] is the weight of a frontier mines in
+		// the components before i, summed over the layouts of the components from i on:
+		// weight[a + b] times the ways to place b mines in them. The weight of component i
+		// having k mines is then the sum of prefix[i][a] * after[a + k], without convolving
+		// prefix[i] with the components after i, so the whole pass is O(F^2), not O(n F^2).
+		double[] probabilities = new double[frontier.getRows() * frontier.getCols()];
+		double[] after = weight;
+		for (int i = n - 1; i >= 0; i--) {
+			double[] ways = counts[i].ways, before = prefix[i];
+			double[] given = new double[ways.length];
+			for (int k = 0; k < ways.length; k++)
+				for (int a = 0; a < before.length; a++)
+					given[k] += before[a] * after[a + k];
+			Component component = components.get(i);
+			for (int j = 0; j < component.order.length; j++) {
+				double p = 0;
+				for (int k = 0; k < ways.length; k++)
+					p += counts[i].mineWays[j][k] * given[k];
+				probabilities[frontier.getCell(component.order[j])] = p / total;
+			}
+			double[] next = new double[before.length];
+			for (int a = 0; a < before.length; a++)
+				for (int k = 0; k < ways.length; k++)
+					next[a] += ways[k] * after[a + k];
+			after = next;
+		}
+		for (int i = frontier.getFrontierSize(); i < frontier.getUnknownCount(); i++)
+			probabilities[frontier.getCell(i)] = interiorMines / total / interior;
+		return probabilities;
+	}
+
+	private static double[] convolve(double[] a, double[] b) {
+		double[] c = new double[a.length + b.length - 1];
+		for (int i = 0; i < a.length; i++)
+			for (int j = 0; j < b.length; j++)
+				c[i + j] += a[i] * b[j];
+		return c;
+	}
+
+	private static double logChoose(int n, int k) {
+		k = Math.min(k, n - k);
+		double log = 0;
+		for (int i = 0; i < k; i++)
+			log += Math.log((double) (n - i) / (i + 1));
+		return log;
+	}
+
+	/**
+	 * Estimates the position with the sampler, for positions that cannot be enumerated.
+	 */
+	private double[] sample() {
+		MineSampler.Estimate estimate = new MineSampler(board).estimate(FALLBACK_MILLIS);
+		int cols = frontier.getCols();
+		double[] probabilities = new double[frontier.getRows() * cols];
+		for (int i = 0; i < probabilities.length; i++)
+			probabilities[i] = estimate.getProbability(i / cols, i % cols);
+		return probabilities;
+	}
+
+	/**
+	 * Gets the fraction of component lookups answered from the cache since startup.
+	 * @return cache hit rate
+	 */
+	public static double getHitRate() {
+		synchronized (cache) {
+			return totalLookups == 0 ? 0 : (double) totalHits / totalLookups;
+		}
+	}
+
+	/**
+	 * A frontier component: a set of unknowns and the constraints covering them.
+	 */
+	private class Component {
+
+		private List<Integer> unknowns = new ArrayList<Integer>(), constraints = new ArrayList<Integer>();
+		private int[] order;
+		private boolean hit;
+
+		/**
+		 * Looks the component's shape up in the cache, enumerating it on a miss.
+		 * @return counts of the component, or null if it is too large
+		 */
+		Counts solve() {
+			Shape shape = shape();
+			Counts counts;
+			synchronized (cache) {
+				counts = cache.get(shape);
+			}
+			if (counts == null) {
+				counts = enumerate();
+				synchronized (cache) {
+					cache.put(shape, counts == null ? TOO_LARGE : counts);
+				}
+			} else {
+				hit = true;
+			}
+			return counts == TOO_LARGE ? null : counts;
+		}
+
+		/**
+		 * Builds the canonical shape of the component. Unknowns are ordered row-major, which
+		 * fixes the order the counts are stored in.
+		 */
+		private Shape shape() {
+			int cols = frontier.getCols(), minR = Integer.MAX_VALUE, minC = Integer.MAX_VALUE;
+			order = new int[unknowns.size()];
+			for (int i = 0; i < order.length; i++)
+				order[i] = unknowns.get(i);
+			sortByCell(order);
+			// The corner covers the numbers too, which can be further out than one cell on
+			// some topologies, so no relative position is negative.
+			for (int u : order) {
+				int cell = frontier.getCell(u);
+				minR = Math.min(minR, cell / cols);
+				minC = Math.min(minC, cell % cols);
+			}
+			for (int k : constraints) {
+				int cell = frontier.getConstraintCell(k);
+				minR = Math.min(minR, cell / cols);
+				minC = Math.min(minC, cell % cols);
+			}
+
+			// On a square grid the positions fix which cells each constraint covers. Other
+			// topologies can wrap or depend on row parity, so the coverage is added as well.
+			int incidences = 0;
+			boolean square = board.getTopology() == Topology.SQUARE;
+			if (!square)
+				for (int k : constraints)
+					incidences += frontier.getConstraintCells(k).length;
+
+			long[] features = new long[order.length + constraints.size() + incidences];
+			int f = 0;
+			int[] cells = new int[order.length];
+			for (int i = 0; i < order.length; i++) {
+				int cell = cells[i] = frontier.getCell(order[i]);
+				features[f++] = feature(cell / cols - minR, cell % cols - minC, 0);
+			}
+			for (int k : constraints) {
+				int cell = frontier.getConstraintCell(k);
+				features[f++] = feature(cell / cols - minR, cell % cols - minC, 1 + frontier.getConstraintMines(k));
+			}
+			if (!square) {
+				long[] byCell = new long[constraints.size()];
+				for (int j = 0; j < byCell.length; j++)
+					byCell[j] = ((long) frontier.getConstraintCell(constraints.get(j)) << 32) | constraints.get(j);
+				Arrays.sort(byCell);
+				for (int j = 0; j < byCell.length; j++)
+					for (int u : frontier.getConstraintCells((int) byCell[j]))
+						features[f++] = feature(j, Arrays.binarySearch(cells, frontier.getCell(u)), INCIDENCE);
+			}
+			Arrays.sort(features);
+			return new Shape(features);
+		}
+
+		private void sortByCell(int[] unknownIds) {
+			long[] keyed = new long[unknownIds.length];
+			for (int i = 0; i < keyed.length; i++)
+				keyed[i] = ((long) frontier.getCell(unknownIds[i]) << 32) | unknownIds[i];
+			Arrays.sort(keyed);
+			for (int i = 0; i < keyed.length; i++)
+				unknownIds[i] = (int) keyed[i];
+		}
+
+		/**
+		 * Enumerates the mine layouts of the component by backtracking, counting the layouts
+		 * with each number of mines, and how many of them have a mine on each cell.
+		 */
+		private Counts enumerate() {
+			int n = order.length;
+			int[] local = new int[frontier.getFrontierSize()];
+			for (int i = 0; i < n; i++)
+				local[order[i]] = i;
+			int[][] cellConstraints = new int[n][];
+			int[] target = new int[constraints.size()], open = new int[target.length], sums = new int[target.length];
+			for (int j = 0; j < target.length; j++) {
+				int k = constraints.get(j);
+				target[j] = frontier.getConstraintMines(k);
+				open[j] = frontier.getConstraintCells(k).length;
+			}
+			int[] degree = new int[n];
+			for (int k : constraints)
+				for (int u : frontier.getConstraintCells(k))
+					degree[local[u]]++;
+			for (int i = 0; i < n; i++)
+				cellConstraints[i] = new int[degree[i]];
+			Arrays.fill(degree, 0);
+			for (int j = 0; j < target.length; j++)
+				for (int u : frontier.getConstraintCells(constraints.get(j)))
+					cellConstraints[local[u]][degree[local[u]]++] = j;
+
+			Counts counts = new Counts(n);
+			byte[] mine = new byte[n], tried = new byte[n];
+			int pos = 0, placed = 0;
+			long nodes = 0;
+			while (pos >= 0) {
+				if (pos == n) {
+					counts.ways[placed]++;
+					for (int i = 0; i < n; i++)
+						counts.mineWays[i][placed] += mine[i];
+					pos--;
+					continue;
+				}
+				// Take back the value at pos, if any, before trying the next one.
+				if (tried[pos] > 0) {
+					placed -= mine[pos];
+					for (int j : cellConstraints[pos]) {
+						open[j]++;
+						sums[j] -= mine[pos];
+					}
+				}
+				if (tried[pos] == 2) {
+					tried[pos] = 0;
+					pos--;
+					continue;
+				}
+				if (++nodes > MAX_NODES)
+					return null;
+				mine[pos] = tried[pos]++;
+				placed += mine[pos];
+				boolean ok = true;
+				for (int j : cellConstraints[pos]) {
+					open[j]--;
+					sums[j] += mine[pos];
+					if (sums[j] > target[j] || target[j] - sums[j] > open[j])
+						ok = false;
+				}
+				if (ok)
+					pos++;
+			}
+			counts.normalise();
+			return counts;
+		}
+	}
+
+	/**
+	 * Packs a feature of a shape: row in the high bits, col in bits 12 to 35 and kind in the
+	 * low 12 bits. The row and col are relative to the corner of the shape, so not negative.
+	 */
+	private static long feature(int r, int c, int kind) {
+		return ((long) r << 36) | ((long) c << 12) | kind;
+	}
+
+	/**
+	 * The canonical shape of a component, hashed Zobrist style: the XOR of a pseudo-random key
+	 * per feature. The features themselves are kept so that equal hashes are confirmed.
+	 */
+	private static class Shape {
+
+		private long[] features;
+		private long hash;
+
+		Shape(long[] features) {
+			this.features = features;
+			for (long f : features)
+				hash ^= mix(f);
+		}
+
+		/**
+		 * SplitMix64 finaliser, standing in for a table of random Zobrist keys.
+		 */
+		private static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+			z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+			return z ^ (z >>> 31);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (hash ^ (hash >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Shape && ((Shape) o).hash == hash && Arrays.equals(((Shape) o).features, features);
+		}
+	}
+
+	/**
+	 * Layout counts of a component: ways[k] layouts with k mines, of which mineWays[i][k] have a
+	 * mine on cell i. Scaled so the largest count is 1, since only ratios matter.
+	 */
+	private static class Counts {
+
+		private double[] ways;
+		private double[][] mineWays;
+
+		Counts(int n) {
+			ways = new double[n + 1];
+			mineWays = new double[n][n + 1];
+		}
+
+		void normalise() {
+			double max = 0;
+			for (double w : ways)
+				max = Math.max(max, w);
+			if (max == 0)
+				return;
+			for (int k = 0; k < ways.length; k++) {
+				ways[k] /= max;
+				for (double[] cell : mineWays)
+					cell[k] /= max;
+			}
+		}
+	}
+
+	/**
+	 * Mine probabilities of a position, with how the cache did on it.
+	 */
+	public class Result {
+
+		private double[] probabilities;
+		private boolean exact;
+		private int hits, components;
+		private long nanos;
+
+		private Result(double[] probabilities, boolean exact, int hits, int components, long nanos) {
+			this.probabilities = probabilities;
+			this.exact = exact;
+			this.hits = hits;
+			this.components = components;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * Gets the probability that the given cell is a mine. Shown cells have a probability of zero.
+		 * @param row row of the cell
+		 * @param col col of the cell
+		 * @return mine probability
+		 */
+		public double getProbability(int row, int col) {
+			return probabilities[row * frontier.getCols() + col];
+		}
+
+		/**
+		 * Returns false if a component was too large and the probabilities were sampled.
+		 * @return true if the probabilities are exact
+		 */
+		public boolean isExact() {
+			return exact;
+		}
+
+		/**
+		 * Gets the number of components answered from the cache.
+		 * @return cache hits
+		 */
+		public int getHits() {
+			return hits;
+		}
+
+		/**
+		 * Gets the number of frontier components in the position.
+		 * @return number of components
+		 */
+		public int getComponents() {
+			return components;
+		}
+
+		/**
+		 * Gets the fraction of components answered from the cache.
+		 * @return cache hit rate for this position
+		 */
+		public double getHitRate() {
+			return components == 0 ? 0 : (double) hits / components;
+		}
+
+		/**
+		 * Gets the time taken to solve the position.
+		 * @return solve time in ns
+		 */
+		public long getSolveNanos() {
+			return nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d components, %d cached (%.0f%%), %.2f ms%s", components, hits,
+					100 * getHitRate(), nanos / 1e6, exact ? "" : ", sampled");
+		}
+	}
+}
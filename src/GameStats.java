@@ -0,0 +1,362 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * A log of finished games, kept in an append-only file of fixed size records. The file is
+ * memory-mapped, and grows by doubling, so a record is read or appended without a system call.
+ * The number of records is kept in the header and written after the record itself, so a
+ * record cut short by a crash is never counted.
+ *
+ * Opening the log reads every record once to build a summary index per board size: prefix
+ * sums of wins and a min tree of winning times, in order of play. After that, the win rate
+ * and best time of the last N games of a size are answered in O(1) and O(log N) time, and
+ * each new record updates the index of its size in O(log N) time.
+ *
+ * All methods are synchronized, since games are recorded and queried from different threads.
+ * Opening a large log takes time in proportion to its size, so it should not be done on the
+ * JavaFX thread.
+ */
+public class GameStats implements Closeable {
+
+	private static final long MAGIC = 0x46584d5353544131L; // "FXMSSTA1"
+	private static final int HEADER = 16, RECORD = 48;
+	private static final int INITIAL_RECORDS = 1 << 12;
+
+	/**
+	 * Header and Record Offsets.
+	 */
+	private static final int COUNT = 8;
+	private static final int TIME = 0, SEED = 8, ROWS = 16, COLS = 20, MINES = 24, SIZE = 28, WON = 29,
+			DURATION = 32, MOVES = 40, THREE_BV = 44;
+
+	private RandomAccessFile file;
+	private MappedByteBuffer map;
+	private long count;
+	private LinkedHashMap<Size, Index> indexes = new LinkedHashMap<Size, Index>();
+
+	private GameStats(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		boolean create = this.file.length() < HEADER;
+		if (create)
+			this.file.setLength(HEADER + (long) INITIAL_RECORDS * RECORD);
+		map = this.file.getChannel().map(MapMode.READ_WRITE, 0, this.file.length());
+		if (create) {
+			map.putLong(0, MAGIC);
+			map.putLong(COUNT, 0);
+		}
+	}
+
+	/**
+	 * Opens the log in the given file, creating it if it does not exist, and builds the
+	 * summary indexes from the records in it.
+	 *
+	 * @param file file the log is kept in
+	 * @return the log
+	 * @throws IOException if the file cannot be mapped or is not a game log
+	 */
+	public static GameStats open(File file) throws IOException {
+		GameStats stats = new GameStats(file);
+		if (stats.map.getLong(0) != MAGIC) {
+			stats.close();
+			throw new IOException("Invalid FX Minesweeper game log: Incorrect file header.");
+		}
+		long count = stats.map.getLong(COUNT);
+		for (long i = 0; i < count; i++) {
+			Game game = stats.read(i);
+			stats.index(game.getSize()).add(game);
+		}
+		stats.count = count;
+		return stats;
+	}
+
+	/**
+	 * Appends a finished game to the log.
+	 *
+	 * @param board board the game was played on
+	 * @param won true if the game was won
+	 * @param durationMillis time from the first move to the end of the game in ms
+	 * @param moves number of moves made
+	 * @param threeBV 3BV of the board, see {@link BoardScorer}
+	 * @throws IOException if the file cannot be grown
+	 */
+	public synchronized void record(Board board, boolean won, long durationMillis, int moves, int threeBV)
+			throws IOException {
+		long offset = HEADER + count * RECORD;
+		if (offset + RECORD > map.capacity()) {
+			long length = HEADER + Math.max(count, INITIAL_RECORDS) * 2 * RECORD;
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("FX Minesweeper game log is full.");
+			file.setLength(length);
+			map = file.getChannel().map(MapMode.READ_WRITE, 0, length);
+		}
+		int o = (int) offset;
+		map.putLong(o + TIME, System.currentTimeMillis());
+		map.putLong(o + SEED, board.getSeed());
+		map.putInt(o + ROWS, board.getRows());
+		map.putInt(o + COLS, board.getCols());
+		map.putInt(o + MINES, board.getMines());
+		map.put(o + SIZE, (byte) board.getSize());
+		map.put(o + WON, (byte) (won ? 1 : 0));
+		map.putLong(o + DURATION, durationMillis);
+		map.putInt(o + MOVES, moves);
+		map.putInt(o + THREE_BV, threeBV);
+		map.putLong(COUNT, ++count);
+
+		Game game = read(count - 1);
+		index(game.getSize()).add(game);
+	}
+
+	/**
+	 * Reads a game from the log.
+	 *
+	 * @param i number of the game, from 0 for the first game recorded
+	 * @return the game
+	 */
+	public synchronized Game read(long i) {
+		int o = (int) (HEADER + i * RECORD);
+		Game game = new Game();
+		game.time = map.getLong(o + TIME);
+		game.seed = map.getLong(o + SEED);
+		game.size = new Size(map.getInt(o + ROWS), map.getInt(o + COLS), map.getInt(o + MINES), map.get(o + SIZE));
+		game.won = map.get(o + WON) != 0;
+		game.duration = map.getLong(o + DURATION);
+		game.moves = map.getInt(o + MOVES);
+		game.threeBV = map.getInt(o + THREE_BV);
+		return game;
+	}
+
+	private Index index(Size size) {
+		Index index = indexes.get(size);
+		if (index == null)
+			indexes.put(size, index = new Index());
+		return index;
+	}
+
+	/**
+	 * Gets the number of games in the log.
+	 * @return number of games
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the board sizes played, in the order they were first played.
+	 * @return board sizes played
+	 */
+	public synchronized List<Size> getSizes() {
+		return new ArrayList<Size>(indexes.keySet());
+	}
+
+	/**
+	 * Gets the number of games played on the given board size.
+	 * @param size board size
+	 * @return number of games
+	 */
+	public synchronized int getGames(Size size) {
+		Index index = indexes.get(size);
+		return index == null ? 0 : index.count;
+	}
+
+	/**
+	 * Gets the fraction of the last n games on the given board size that were won.
+	 * @param size board size
+	 * @param n number of games, counting back from the last
+	 * @return win rate, or NaN if no games were played
+	 */
+	public synchronized double getWinRate(Size size, int n) {
+		Index index = indexes.get(size);
+		if (index == null || index.count == 0)
+			return Double.NaN;
+		int from = Math.max(0, index.count - n);
+		return (double) (index.wins[index.count] - index.wins[from]) / (index.count - from);
+	}
+
+	/**
+	 * Gets the shortest winning time of the last n games on the given board size.
+	 * @param size board size
+	 * @param n number of games, counting back from the last
+	 * @return best time in ms, or -1 if none of the games were won
+	 */
+	public synchronized long getBestTime(Size size, int n) {
+		Index index = indexes.get(size);
+		if (index == null)
+			return -1;
+		long best = index.min(Math.max(0, index.count - n), index.count);
+		return best == Long.MAX_VALUE ? -1 : best;
+	}
+
+	/**
+	 * Writes changes through to the file and closes it.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		map.force();
+		file.close();
+	}
+
+	/**
+	 * The summary index of one board size: prefix sums of wins, and a min tree over the
+	 * winning times (Long.MAX_VALUE for losses), both in order of play.
+	 */
+	private static class Index {
+
+		private int count;
+		private int[] wins = new int[16];
+		private long[] tree = new long[32];
+
+		Index() {
+			Arrays.fill(tree, Long.MAX_VALUE);
+		}
+
+		/**
+		 * Adds the next game of this size.
+		 */
+		void add(Game game) {
+			int leaves = tree.length / 2;
+			if (count + 1 >= wins.length)
+				wins = Arrays.copyOf(wins, wins.length * 2);
+			if (count == leaves) {
+				long[] grown = new long[tree.length * 2];
+				Arrays.fill(grown, Long.MAX_VALUE);
+				System.arraycopy(tree, leaves, grown, 2 * leaves, leaves);
+				tree = grown;
+				leaves *= 2;
+				for (int i = leaves - 1; i > 0; i--)
+					tree[i] = Math.min(tree[2 * i], tree[2 * i + 1]);
+			}
+
+			wins[count + 1] = wins[count] + (game.won ? 1 : 0);
+			int i = leaves + count;
+			tree[i] = game.won ? game.duration : Long.MAX_VALUE;
+			for (i /= 2; i > 0; i /= 2)
+				tree[i] = Math.min(tree[2 * i], tree[2 * i + 1]);
+			count++;
+		}
+
+		/**
+		 * Gets the smallest time of the games from (inclusive) to (exclusive).
+		 */
+		long min(int from, int to) {
+			long min = Long.MAX_VALUE;
+			for (from += tree.length / 2, to += tree.length / 2; from < to; from /= 2, to /= 2) {
+				if ((from & 1) == 1)
+					min = Math.min(min, tree[from++]);
+				if ((to & 1) == 1)
+					min = Math.min(min, tree[--to]);
+			}
+			return min;
+		}
+	}
+
+	/**
+	 * A board size: the dimensions and mines, and the size constant it was played as.
+	 */
+	public static class Size {
+
+		private static final String[] names = { "Small", "Medium", "Large", "Humongous" };
+
+		private int rows, cols, mines, size;
+
+		Size(int rows, int cols, int mines, int size) {
+			this.rows = rows;
+			this.cols = cols;
+			this.mines = mines;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Size))
+				return false;
+			Size other = (Size) o;
+			return rows == other.rows && cols == other.cols && mines == other.mines;
+		}
+
+		@Override
+		public int hashCode() {
+			return (rows * 31 + cols) * 31 + mines;
+		}
+
+		@Override
+		public String toString() {
+			String dims = rows + "x" + cols + ", " + mines + " mines";
+			return size >= 0 && size < names.length ? names[size] + " (" + dims + ")" : dims;
+		}
+	}
+
+	/**
+	 * A game read from the log.
+	 */
+	public static class Game {
+
+		private long time, seed, duration;
+		private Size size;
+		private boolean won;
+		private int moves, threeBV;
+
+		/**
+		 * Gets the time the game ended.
+		 * @return time in ms since the epoch
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Gets the seed the mines were placed with.
+		 * @return the seed
+		 */
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * Gets the board size.
+		 * @return the size
+		 */
+		public Size getSize() {
+			return size;
+		}
+
+		/**
+		 * Returns true if the game was won.
+		 * @return true if the game was won
+		 */
+		public boolean isWon() {
+			return won;
+		}
+
+		/**
+		 * Gets the time from the first move to the end of the game.
+		 * @return duration in ms
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * Gets the number of moves made.
+		 * @return number of moves
+		 */
+		public int getMoves() {
+			return moves;
+		}
+
+		/**
+		 * Gets the 3BV of the board.
+		 * @return the 3BV
+		 */
+		public int get3BV() {
+			return threeBV;
+		}
+	}
+}
@@ -0,0 +1,274 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Finds cells that are certainly safe, for the "Hint" action. The engine lives as long as the
+ * game and keeps one constraint per shown number, keyed by the cell of the number. After a
+ * move only the constraints around the changed cells are rebuilt and re-checked, so the work
+ * per move is proportional to the change, not to the board.
+ *
+ * A constraint covers the unknown neighbours of a number (hidden, flagged or question marked,
+ * and not yet deduced) and how many of them are mines. Constraints are checked on their own
+ * (all safe or all mines) and against each other when one covers a subset of the other.
+ * Deductions are only kept while the numbers they follow from are shown. Each deduction is
+ * recorded against the numbers of the constraints it came from; when an undo hides a number,
+ * the deductions recorded against it are dropped, and so are those of every number next to a
+ * dropped deduction, since its constraint may have used it. Those constraints are then rebuilt
+ * and re-checked, so an undo costs time in proportion to the deductions it touches. Restart
+ * hides everything and calls {@link #reset()}.
+ */
+public class HintEngine {
+
+	private Board board;
+	private int rows, cols;
+	private Topology.Adjacency adjacency;
+	private int[] around, near;
+	private HashMap<Integer, Constraint> constraints = new HashMap<Integer, Constraint>();
+	private HashSet<Integer> safe = new HashSet<Integer>(), mines = new HashSet<Integer>();
+	private HashMap<Integer, ArrayList<Integer>> derived = new HashMap<Integer, ArrayList<Integer>>();
+	private ArrayDeque<Integer> dirty = new ArrayDeque<Integer>(), hints = new ArrayDeque<Integer>();
+
+	/**
+	 * Creates a hint engine for the given board, reading every number already shown.
+	 * @param board board to give hints for
+	 */
+	public HintEngine(Board board) {
+		this.board = board;
+		this.rows = board.getRows();
+		this.cols = board.getCols();
+		this.adjacency = board.getAdjacency();
+		this.around = new int[adjacency.getMaxDegree()];
+		this.near = new int[adjacency.getMaxDegree()];
+		reset();
+	}
+
+	/**
+	 * Forgets every constraint and deduction and reads the numbers shown again, for when
+	 * most of the board was hidden, e.g. by restart. Hidden cells from an undo are handled by
+	 * {@link #changed(int)} instead.
+	 */
+	public void reset() {
+		constraints.clear();
+		safe.clear();
+		mines.clear();
+		derived.clear();
+		hints.clear();
+		dirty.clear();
+		int[] words = board.getPackedView();
+		for (int w = 0; w < words.length; w++) {
+			// Two bits per cell; a shown cell is 01.
+			int shown = words[w] & ~(words[w] >>> 1) & 0x55555555;
+			for (; shown != 0; shown &= shown - 1)
+				dirty.add(w * 16 + (Integer.numberOfTrailingZeros(shown) >>> 1));
+		}
+		solve();
+	}
+
+	/**
+	 * Marks a cell whose view value changed, e.g. from {@link Board#diff(Board, java.util.function.IntConsumer)}.
+	 * The constraints around it are rebuilt on the next {@link #solve()}. If the cell is no
+	 * longer shown, the deductions of its number and of the numbers around it, which counted
+	 * it as shown, are dropped first, together with those constraints.
+	 * @param cell changed cell (row * cols + col)
+	 */
+	public void changed(int cell) {
+		if (board.getView(cell / cols, cell % cols) != Board.SHOWN) {
+			ArrayDeque<Integer> numbers = new ArrayDeque<Integer>();
+			numbers.add(cell);
+			constraints.remove(cell);
+			for (int k = 0, count = adjacency.neighbours(cell, around); k < count; k++) {
+				numbers.add(around[k]);
+				constraints.remove(around[k]);
+			}
+			retract(numbers);
+		}
+		mark(cell);
+	}
+
+	/**
+	 * Marks a cell and its neighbours dirty, and queues the cell as a hint if it is known to
+	 * be safe and hidden.
+	 */
+	private void mark(int cell) {
+		dirty.add(cell);
+		for (int k = 0, count = adjacency.neighbours(cell, around); k < count; k++)
+			dirty.add(around[k]);
+		if (safe.contains(cell) && board.getView(cell / cols, cell % cols) != Board.SHOWN)
+			hints.add(cell);
+	}
+
+	/**
+	 * Drops the deductions recorded against the given numbers, then those recorded against
+	 * every number next to a dropped deduction, and so on, marking the cells around each
+	 * dirty. The constraints next to a dropped deduction are dropped too, so they are not
+	 * compared against before they are rebuilt without it.
+	 */
+	private void retract(ArrayDeque<Integer> numbers) {
+		while (!numbers.isEmpty()) {
+			ArrayList<Integer> cells = derived.remove(numbers.poll());
+			if (cells == null)
+				continue;
+			for (int cell : cells) {
+				if (!safe.remove(cell) && !mines.remove(cell))
+					continue;
+				mark(cell);
+				for (int k = 0, count = adjacency.neighbours(cell, around); k < count; k++) {
+					constraints.remove(around[k]);
+					if (derived.containsKey(around[k]))
+						numbers.add(around[k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds and checks the constraints marked dirty, and any that change because of
+	 * new deductions.
+	 */
+	public void solve() {
+		while (!dirty.isEmpty()) {
+			int cell = dirty.poll();
+			Constraint constraint = rebuild(cell);
+			if (constraint == null)
+				continue;
+			if (constraint.mines == 0 || constraint.mines == constraint.cells.length) {
+				deduceAll(constraint.cells, constraint.mines != 0, cell, cell);
+				continue;
+			}
+			// Only constraints sharing a cell with this one can be a subset or superset of it.
+			for (int u : constraint.cells)
+				for (int k = 0, count = adjacency.neighbours(u, near); k < count; k++) {
+					Constraint other = constraints.get(near[k]);
+					if (other == null || other == constraint)
+						continue;
+					if (subset(constraint, other))
+						deduceDifference(other, constraint, near[k], cell);
+					else if (subset(other, constraint))
+						deduceDifference(constraint, other, cell, near[k]);
+				}
+		}
+	}
+
+	/**
+	 * Returns a hidden cell known to be safe, or -1 if none is known.
+	 * @return safe cell (row * cols + col), or -1
+	 */
+	public int nextSafe() {
+		solve();
+		while (!hints.isEmpty()) {
+			int cell = hints.peek();
+			if (safe.contains(cell) && board.getView(cell / cols, cell % cols) != Board.SHOWN)
+				return cell;
+			hints.poll();
+		}
+		return -1;
+	}
+
+	/**
+	 * Rebuilds the constraint of a cell from the board.
+	 * @return the constraint, or null if the cell has none
+	 */
+	private Constraint rebuild(int cell) {
+		int r = cell / cols, c = cell % cols;
+		if (board.getView(r, c) != Board.SHOWN || board.getValue(r, c) < 0) {
+			constraints.remove(cell);
+			return null;
+		}
+		int degree = adjacency.neighbours(cell, around);
+		int[] cells = new int[degree];
+		int count = 0, known = 0;
+		for (int k = 0; k < degree; k++) {
+			int n = around[k];
+			if (board.getView(n / cols, n % cols) == Board.SHOWN || safe.contains(n))
+				continue;
+			if (mines.contains(n))
+				known++;
+			else
+				cells[count++] = n;
+		}
+		if (count == 0) {
+			constraints.remove(cell);
+			return null;
+		}
+		Constraint constraint = new Constraint(Arrays.copyOf(cells, count), board.getValue(r, c) - known);
+		constraints.put(cell, constraint);
+		return constraint;
+	}
+
+	/**
+	 * Checks whether the cells of one constraint are a subset of another's. Both are sorted.
+	 */
+	private static boolean subset(Constraint small, Constraint big) {
+		if (small.cells.length >= big.cells.length)
+			return false;
+		int j = 0;
+		for (int cell : small.cells) {
+			while (j < big.cells.length && big.cells[j] < cell)
+				j++;
+			if (j == big.cells.length || big.cells[j] != cell)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Deduces what can be deduced about the cells of big that are not in small, where small
+	 * is a subset of big: they hold big.mines - small.mines mines.
+	 */
+	private void deduceDifference(Constraint big, Constraint small, int bigNumber, int smallNumber) {
+		int mineCount = big.mines - small.mines, size = big.cells.length - small.cells.length;
+		if (mineCount != 0 && mineCount != size)
+			return;
+		int[] rest = new int[size];
+		int k = 0, j = 0;
+		for (int cell : big.cells) {
+			if (j < small.cells.length && small.cells[j] == cell)
+				j++;
+			else
+				rest[k++] = cell;
+		}
+		deduceAll(rest, mineCount != 0, bigNumber, smallNumber);
+	}
+
+	/**
+	 * Records that the given cells are all mines or all safe, against the one or two numbers
+	 * they follow from, and marks the constraints around them dirty.
+	 */
+	private void deduceAll(int[] cells, boolean mine, int number, int otherNumber) {
+		for (int cell : cells) {
+			if (!(mine ? mines : safe).add(cell))
+				continue;
+			record(number, cell);
+			if (otherNumber != number)
+				record(otherNumber, cell);
+			mark(cell);
+		}
+	}
+
+	/**
+	 * Records a deduced cell against a number it follows from.
+	 */
+	private void record(int number, int cell) {
+		ArrayList<Integer> cells = derived.get(number);
+		if (cells == null)
+			derived.put(number, cells = new ArrayList<Integer>());
+		cells.add(cell);
+	}
+
+	/**
+	 * The unknown neighbours of a shown number, sorted, and how many of them are mines.
+	 */
+	private static class Constraint {
+
+		private int[] cells;
+		private int mines;
+
+		Constraint(int[] cells, int mines) {
+			this.cells = cells;
+			this.mines = mines;
+		}
+	}
+}
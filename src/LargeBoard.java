@@ -0,0 +1,251 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The rules of a {@link Topology#SQUARE} board, for boards too large for {@link Board}.
+ * Subclasses only store the board: they keep the mine value and view value of each cell,
+ * addressed by a long index, row * cols + col, so boards can go up to Integer.MAX_VALUE rows
+ * and cols, and keep the flag and hidden cell counts. Reveal, flag and isWon behave as in
+ * Board, and mines are placed from a seed the same way, so a seed gives the same mines in
+ * every board.
+ *
+ * isWon is kept as a count of the safe cells still hidden, so it does not scan the board,
+ * and zero areas are revealed a row span at a time, so the work list holds spans rather than
+ * single cells.
+ */
+public abstract class LargeBoard implements Minefield {
+
+	protected int rows, cols, mines;
+
+	/**
+	 * Gets the mine value of a cell.
+	 * @param cell cell (row * cols + col)
+	 * @return {@link Board#MINE} or the number of adjacent mines
+	 */
+	protected abstract int value(long cell);
+
+	/**
+	 * Checks whether a cell has a mine. Subclasses that count numbers on demand override
+	 * this to skip the count.
+	 * @param cell cell (row * cols + col)
+	 * @return true if the cell has a mine
+	 */
+	protected boolean isMine(long cell) {
+		return value(cell) == Board.MINE;
+	}
+
+	/**
+	 * Gets the view value of a cell.
+	 * @param cell cell (row * cols + col)
+	 * @return view value of the cell
+	 */
+	protected abstract int view(long cell);
+
+	/**
+	 * Sets the view value of a cell.
+	 * @param cell cell (row * cols + col)
+	 * @param view new view value of the cell
+	 */
+	protected abstract void setView(long cell, int view);
+
+	/**
+	 * Places a mine on a cell that has none.
+	 * @param row row of the cell
+	 * @param col col of the cell
+	 */
+	protected abstract void placeMine(int row, int col);
+
+	/**
+	 * Adds to the number of flagged squares.
+	 * @param d number to add
+	 */
+	protected abstract void addFlags(int d);
+
+	/**
+	 * Gets the number of cells without a mine that are still hidden.
+	 * @return number of hidden safe cells
+	 */
+	protected abstract long getHiddenSafe();
+
+	/**
+	 * Adds to the number of cells without a mine that are still hidden.
+	 * @param d number to add
+	 */
+	protected abstract void addHiddenSafe(long d);
+
+	/**
+	 * Places the mines, drawing cells in the same order as {@link Board}. Stops with a
+	 * CancellationException if the thread is interrupted.
+	 * @param seed seed used to place the mines
+	 */
+	protected void addMines(long seed) {
+		Random rand = new Random(seed);
+		for (int i = 0; i < mines; i++) {
+			if ((i & Board.CANCEL_CHECK_MASK) == 0)
+				Board.checkCancelled();
+			int r = rand.nextInt(rows), c = rand.nextInt(cols);
+			while (isMine(cell(r, c))) {
+				r = rand.nextInt(rows);
+				c = rand.nextInt(cols);
+			}
+			placeMine(r, c);
+		}
+	}
+
+	/**
+	 * Reveals an area of cells originating at the given row and col. Zero areas are filled
+	 * a row span at a time, so the work list holds spans rather than single cells.
+	 *
+	 * @param row row of square to be revealed
+	 * @param col col of square to be revealed
+	 * @return true if reveal was successful, false if out of bounds or on a mine
+	 */
+	@Override
+	public boolean reveal(int row, int col) {
+		if (row < 0 || col < 0 || row >= rows || col >= cols)
+			return false;
+		long start = cell(row, col);
+		int value = value(start);
+		if (value == Board.MINE)
+			return false;
+		if (value != 0) {
+			show(start);
+			return true;
+		}
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = row;
+		stack[top++] = col;
+		while (top > 0) {
+			int c = stack[--top], r = stack[--top];
+			if (!isOpenZero(r, c))
+				continue;
+			int x1 = c, x2 = c;
+			while (x1 > 0 && isOpenZero(r, x1 - 1))
+				x1--;
+			while (x2 < cols - 1 && isOpenZero(r, x2 + 1))
+				x2++;
+
+			// Show the span and everything around it, queueing each run of zeros in the
+			// rows above and below.
+			int left = Math.max(0, x1 - 1), right = Math.min(cols - 1, x2 + 1);
+			for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++) {
+				boolean run = false;
+				for (int nc = left; nc <= right; nc++) {
+					long n = cell(nr, nc);
+					if (nr != r && isOpenZero(nr, nc)) {
+						if (!run) {
+							if (top + 2 > stack.length)
+								stack = Arrays.copyOf(stack, stack.length * 2);
+							stack[top++] = nr;
+							stack[top++] = nc;
+						}
+						run = true;
+						continue;
+					}
+					run = false;
+					if (!isMine(n))
+						show(n);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a cell is a zero that has not been shown yet.
+	 */
+	private boolean isOpenZero(int r, int c) {
+		long n = cell(r, c);
+		return value(n) == 0 && view(n) != Board.SHOWN;
+	}
+
+	/**
+	 * Shows a cell, keeping the flag and hidden cell counts.
+	 */
+	private void show(long cell) {
+		int view = view(cell);
+		if (view == Board.SHOWN)
+			return;
+		if (view == Board.HIDDEN)
+			addHiddenSafe(-1);
+		else if (view == Board.FLAGGED)
+			addFlags(-1);
+		setView(cell, Board.SHOWN);
+	}
+
+	/**
+	 * Performs the standard flagging procedure of {@link Board#flag(int, int)} on the given tile.
+	 *
+	 * @param row row of square to be flagged
+	 * @param col col of square to be flagged
+	 */
+	@Override
+	public void flag(int row, int col) {
+		long cell = cell(row, col);
+		boolean safe = !isMine(cell);
+		switch (view(cell)) {
+		case Board.HIDDEN:
+			setView(cell, Board.FLAGGED);
+			addFlags(1);
+			if (safe)
+				addHiddenSafe(-1);
+			break;
+		case Board.FLAGGED:
+			setView(cell, Board.QMARK);
+			addFlags(-1);
+			break;
+		case Board.QMARK:
+			setView(cell, Board.HIDDEN);
+			if (safe)
+				addHiddenSafe(1);
+			break;
+		}
+	}
+
+	/**
+	 * Returns true if the game is won, i.e. no cell without a mine is still hidden. Kept as a
+	 * count, so this does not scan the board.
+	 * @return true if the game is won
+	 */
+	@Override
+	public boolean isWon() {
+		return getHiddenSafe() == 0;
+	}
+
+	@Override
+	public int getValue(int row, int col) {
+		return value(cell(row, col));
+	}
+
+	@Override
+	public int getView(int row, int col) {
+		return view(cell(row, col));
+	}
+
+	/**
+	 * Gets the index of a cell.
+	 * @param r row of the cell
+	 * @param c col of the cell
+	 * @return row * cols + col
+	 */
+	protected long cell(int r, int c) {
+		return (long) r * cols + c;
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getCols() {
+		return cols;
+	}
+
+	@Override
+	public int getMines() {
+		return mines;
+	}
+}
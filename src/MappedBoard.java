@@ -0,0 +1,253 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A board kept in a memory-mapped file instead of on the Java heap, for boards too large for
+ * the heap (up to Integer.MAX_VALUE rows and cols). The OS page cache holds the part of the
+ * board in use, the heap only holds the mapping, and a game is reopened by mapping its file
+ * again.
+ *
+ * Each cell is one byte: the low 4 bits hold the mine value (0-8, or 15 for a mine) and the
+ * next 2 bits hold the view value. The file is mapped in 1 GB segments since a single
+ * mapping is limited to 2 GB. The numbers of the mines are added as they are placed, so
+ * creating a board costs time in proportion to its mines, not its area. The flag and hidden
+ * cell counts are kept in the file header, so they survive reopening. A board created with
+ * {@link #createTemp(File, int, int, int, long)} deletes its file when it is closed.
+ *
+ * The rules are those of {@link LargeBoard}. Other topologies are not supported, since a
+ * neighbour table would not fit in the heap for the boards this class is for.
+ */
+public class MappedBoard extends LargeBoard implements Closeable {
+
+	private static final long MAGIC = 0x46584d534d415031L; // "FXMSMAP1"
+	private static final int HEADER = 64;
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+	private static final int VALUE_MASK = 0x0f, VIEW_SHIFT = 4, MINE_VALUE = 0x0f;
+
+	/**
+	 * Header Offsets.
+	 */
+	private static final int ROWS = 8, COLS = 12, MINES = 16, FLAGS = 20, HIDDEN_SAFE = 24, SEED = 32;
+
+	private RandomAccessFile file;
+	private MappedByteBuffer[] segments;
+	private File temporary;
+
+	private MappedBoard(File file, boolean create, long length) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		try {
+			if (create) {
+				this.file.setLength(0);
+				this.file.setLength(length);
+			}
+			length = this.file.length();
+			FileChannel channel = this.file.getChannel();
+			segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = (long) i << SEGMENT_SHIFT;
+				segments[i] = channel.map(MapMode.READ_WRITE, start, Math.min(SEGMENT_MASK + 1, length - start));
+			}
+		} catch (IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a new board in the given file, replacing anything in it.
+	 *
+	 * @param file file to keep the board in
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param mines number of mines in the board
+	 * @param seed seed used to place the mines
+	 * @return the new board
+	 * @throws IOException if the file cannot be created or mapped
+	 * @throws IllegalArgumentException if the size or number of mines is invalid
+	 * @throws java.util.concurrent.CancellationException if the thread is interrupted while
+	 *         the mines are placed; the file is closed
+	 */
+	public static MappedBoard create(File file, int rows, int cols, int mines, long seed) throws IOException {
+		if (rows <= 0 || cols <= 0 || mines < 0 || mines >= (long) rows * cols)
+			throw new IllegalArgumentException("Invalid board: " + rows + "x" + cols + ", " + mines + " mines.");
+		MappedBoard board = new MappedBoard(file, true, HEADER + (long) rows * cols);
+		MappedByteBuffer header = board.segments[0];
+		header.putLong(0, MAGIC);
+		header.putInt(ROWS, board.rows = rows);
+		header.putInt(COLS, board.cols = cols);
+		header.putInt(MINES, board.mines = mines);
+		header.putInt(FLAGS, 0);
+		header.putLong(HIDDEN_SAFE, (long) rows * cols - mines);
+		header.putLong(SEED, seed);
+		try {
+			board.addMines(seed);
+		} catch (RuntimeException e) {
+			board.file.close();
+			throw e;
+		}
+		return board;
+	}
+
+	/**
+	 * Creates a new board in a temporary file in the given directory. The file is deleted
+	 * when the board is closed, or when the JVM exits if it cannot be deleted then.
+	 *
+	 * @param dir directory to create the file in
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param mines number of mines in the board
+	 * @param seed seed used to place the mines
+	 * @return the new board
+	 * @throws IOException if the file cannot be created or mapped
+	 * @throws IllegalArgumentException if the size or number of mines is invalid
+	 * @throws java.util.concurrent.CancellationException if the thread is interrupted while
+	 *         the mines are placed; the file is deleted
+	 */
+	public static MappedBoard createTemp(File dir, int rows, int cols, int mines, long seed) throws IOException {
+		File file = File.createTempFile("fxminesweeper-", ".board", dir);
+		file.deleteOnExit();
+		try {
+			MappedBoard board = create(file, rows, cols, mines, seed);
+			board.temporary = file;
+			return board;
+		} catch (IOException | RuntimeException e) {
+			file.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens a board created by {@link #create(File, int, int, int, long)}, as it was left.
+	 *
+	 * @param file file the board is kept in
+	 * @return the board
+	 * @throws IOException if the file cannot be mapped or is not a mapped board
+	 */
+	public static MappedBoard open(File file) throws IOException {
+		if (file.length() < HEADER)
+			throw new IOException("Invalid FX Minesweeper mapped board: File too short for a header.");
+		MappedBoard board = new MappedBoard(file, false, 0);
+		MappedByteBuffer header = board.segments[0];
+		if (header.getLong(0) != MAGIC) {
+			board.close();
+			throw new IOException("Invalid FX Minesweeper mapped board: Incorrect file header.");
+		}
+		int rows = header.getInt(ROWS), cols = header.getInt(COLS), mines = header.getInt(MINES);
+		if (rows <= 0 || cols <= 0 || mines < 0 || mines >= (long) rows * cols
+				|| board.file.length() != HEADER + (long) rows * cols) {
+			board.close();
+			throw new IOException("Invalid FX Minesweeper mapped board: File does not match its header.");
+		}
+		board.rows = rows;
+		board.cols = cols;
+		board.mines = mines;
+		return board;
+	}
+
+	/**
+	 * Places a mine, adding one to the number of each non-mine neighbour, so the numbers
+	 * are done once the mines are.
+	 */
+	@Override
+	protected void placeMine(int row, int col) {
+		setValue(cell(row, col), MINE_VALUE);
+		for (int nr = Math.max(0, row - 1); nr <= Math.min(rows - 1, row + 1); nr++)
+			for (int nc = Math.max(0, col - 1); nc <= Math.min(cols - 1, col + 1); nc++) {
+				long n = cell(nr, nc);
+				int value = get(n) & VALUE_MASK;
+				if (value != MINE_VALUE)
+					setValue(n, value + 1);
+			}
+	}
+
+	private int get(long cell) {
+		long offset = HEADER + cell;
+		return segments[(int) (offset >>> SEGMENT_SHIFT)].get((int) (offset & SEGMENT_MASK));
+	}
+
+	private void put(long cell, int b) {
+		long offset = HEADER + cell;
+		segments[(int) (offset >>> SEGMENT_SHIFT)].put((int) (offset & SEGMENT_MASK), (byte) b);
+	}
+
+	@Override
+	protected int value(long cell) {
+		int value = get(cell) & VALUE_MASK;
+		return value == MINE_VALUE ? Board.MINE : value;
+	}
+
+	private void setValue(long cell, int value) {
+		put(cell, (get(cell) & ~VALUE_MASK) | value);
+	}
+
+	@Override
+	protected int view(long cell) {
+		return (get(cell) >>> VIEW_SHIFT) & 3;
+	}
+
+	@Override
+	protected void setView(long cell, int view) {
+		put(cell, (get(cell) & VALUE_MASK) | (view << VIEW_SHIFT));
+	}
+
+	@Override
+	protected void addFlags(int d) {
+		segments[0].putInt(FLAGS, segments[0].getInt(FLAGS) + d);
+	}
+
+	@Override
+	protected long getHiddenSafe() {
+		return segments[0].getLong(HIDDEN_SAFE);
+	}
+
+	@Override
+	protected void addHiddenSafe(long d) {
+		segments[0].putLong(HIDDEN_SAFE, segments[0].getLong(HIDDEN_SAFE) + d);
+	}
+
+	/**
+	 * Gets the number of flagged squares.
+	 * @return the flags
+	 */
+	@Override
+	public int getFlags() {
+		return segments[0].getInt(FLAGS);
+	}
+
+	/**
+	 * Gets the seed the mines were placed with.
+	 * @return the seed
+	 */
+	@Override
+	public long getSeed() {
+		return segments[0].getLong(SEED);
+	}
+
+	/**
+	 * Writes changes through to the file.
+	 */
+	public void force() {
+		for (MappedByteBuffer segment : segments)
+			segment.force();
+	}
+
+	/**
+	 * Writes changes through to the file and closes it, or deletes the file of a board made
+	 * by {@link #createTemp(File, int, int, int, long)}. The mapping itself is released when
+	 * this board is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (temporary == null)
+			force();
+		file.close();
+		if (temporary != null)
+			temporary.delete();
+	}
+}
@@ -0,0 +1,513 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Estimates the probability that each unknown cell of a Board is a mine by Markov chain
+ * Monte Carlo, for positions whose frontier is too long to enumerate.
+ *
+ * Interior cells are interchangeable, so the chains only walk over frontier configurations.
+ * A configuration with k frontier mines stands for C(interior, mines - k) full layouts and is
+ * weighted accordingly. A move redraws a small block of frontier cells from its exact
+ * distribution given the rest (a block Gibbs step), since every frontier cell is constrained
+ * and can rarely change on its own. The cells of a block are linked by shared constraints, so
+ * blocks follow the board's {@link Topology}, however far apart its neighbours are. The
+ * interior is the unconstrained pool: a move that changes the number of frontier mines moves
+ * the difference to or from it. Layouts that differ in more cells than a block holds can
+ * still fall into groups a chain does not leave in its time budget.
+ *
+ * Each chain runs on its own thread with its own split of the random stream. The estimate is
+ * the mean over the samples of all chains. The error is estimated by batch means: each chain
+ * splits its samples into consecutive batches, and the spread of the batch means over all
+ * chains gives the standard error. This is an approximation; it holds when a batch is long
+ * compared to the time the chain takes to forget where it was, and understates the error of
+ * a chain that mixes so slowly that it never leaves one region of the layouts.
+ */
+public class MineSampler {
+
+	/**
+	 * Number of sweeps over the frontier each chain discards before it starts sampling.
+	 */
+	private static final int BURN_IN_SWEEPS = 16;
+
+	/**
+	 * Largest number of frontier cells a single move redraws.
+	 */
+	private static final int BLOCK_SIZE = 16;
+
+	/**
+	 * Number of batches each chain keeps for the error estimate. When they are full, pairs are
+	 * merged and the batch size doubles, so a chain keeps between BATCHES / 2 and BATCHES.
+	 */
+	private static final int BATCHES = 32;
+
+	private Frontier frontier;
+	private int[][] partners;
+	private int threads;
+	private long seed;
+
+	/**
+	 * Creates a sampler for the given board, using one chain per processor.
+	 * @param board board to sample
+	 */
+	public MineSampler(Board board) {
+		this(board, Math.max(2, Runtime.getRuntime().availableProcessors()), System.nanoTime());
+	}
+
+	/**
+	 * Creates a sampler for the given board.
+	 * @param board board to sample
+	 * @param threads number of chains, each on its own thread
+	 * @param seed seed of the random streams
+	 */
+	public MineSampler(Board board, int threads, long seed) {
+		this.frontier = new Frontier(board);
+		this.threads = threads;
+		this.seed = seed;
+		this.partners = partners(frontier);
+	}
+
+	/**
+	 * Finds, for each frontier cell, the other frontier cells that share a constraint with it.
+	 */
+	private static int[][] partners(Frontier frontier) {
+		int size = frontier.getFrontierSize();
+		int[][] partners = new int[size][];
+		int[] mark = new int[size], found = new int[size];
+		Arrays.fill(mark, -1);
+		for (int i = 0; i < size; i++) {
+			int count = 0;
+			mark[i] = i;
+			for (int k : frontier.getCellConstraints(i))
+				for (int u : frontier.getConstraintCells(k))
+					if (mark[u] != i) {
+						mark[u] = i;
+						found[count++] = u;
+					}
+			partners[i] = Arrays.copyOf(found, count);
+		}
+		return partners;
+	}
+
+	/**
+	 * Runs the chains for the given time and returns the best estimate found in it.
+	 * @param budgetMillis time budget in ms
+	 * @return mine probability estimate
+	 */
+	public Estimate estimate(long budgetMillis) {
+		long deadline = System.nanoTime() + budgetMillis * 1000000L;
+		Chain[] chains = new Chain[frontier.getFrontierSize() == 0 ? 0 : threads];
+		Thread[] workers = new Thread[chains.length];
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int i = 0; i < chains.length; i++) {
+			chains[i] = new Chain(random.split(), deadline);
+			workers[i] = new Thread(chains[i], "MineSampler-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Chain chain : chains)
+					chain.deadline = 0;
+			}
+		}
+		return new Estimate(chains);
+	}
+
+	/**
+	 * Returns the ratio C(interior, m - d) / C(interior, m), the change in weight when d
+	 * mines move from the interior to the frontier.
+	 */
+	private static double weightRatio(int interior, int m, int d) {
+		if (m - d < 0 || m - d > interior)
+			return 0;
+		double ratio = 1;
+		for (; d > 0; d--, m--)
+			ratio *= (double) m / (interior - m + 1);
+		for (; d < 0; d++, m++)
+			ratio *= (double) (interior - m) / (m + 1);
+		return ratio;
+	}
+
+	/**
+	 * Checks the sampler against the exact probabilities of {@link FrontierSolver} on small
+	 * positions of a {@link Topology#KNIGHT} board, whose constraints reach two rows and cols
+	 * away, and prints the largest deviation of each position in standard errors. A chain
+	 * caught in a rare group of layouts shows up as a deviation of several standard errors.
+	 *
+	 *   java -cp bin MineSampler [POSITIONS] [BUDGET_MILLIS]
+	 *
+	 * @param args optional number of positions (default 20) and time per estimate (default 300)
+	 */
+	public static void main(String[] args) {
+		int positions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		long budget = args.length > 1 ? Long.parseLong(args[1]) : 300;
+		double worst = 0;
+		for (int seed = 0, checked = 0; checked < positions && seed < 100 * positions; seed++) {
+			Board board = new Board(12, 12, 24, seed, Topology.KNIGHT);
+			SplittableRandom random = new SplittableRandom(seed);
+			for (int reveals = 0, attempts = 0; reveals < 12 && attempts < 1000; attempts++) {
+				int r = random.nextInt(12), c = random.nextInt(12);
+				if (board.getValue(r, c) != Board.MINE && board.getView(r, c) != Board.SHOWN) {
+					board.reveal(r, c);
+					reveals++;
+				}
+			}
+			FrontierSolver.Result exact = new FrontierSolver(board).solve();
+			if (!exact.isExact())
+				continue;
+			checked++;
+			Estimate estimate = new MineSampler(board, 4, seed).estimate(budget);
+			double deviation = 0;
+			for (int r = 0; r < 12; r++)
+				for (int c = 0; c < 12; c++) {
+					if (board.getView(r, c) == Board.SHOWN)
+						continue;
+					double error = Math.max(estimate.getError(r, c), 1e-3);
+					deviation = Math.max(deviation, Math.abs(estimate.getProbability(r, c) - exact.getProbability(r, c)) / error);
+				}
+			worst = Math.max(worst, deviation);
+			System.out.printf("Seed %d: %d samples, largest deviation %.2f standard errors%n", seed, estimate.getSamples(),
+					deviation);
+		}
+		System.out.printf("Largest deviation over all positions: %.2f standard errors%n", worst);
+	}
+
+	/**
+	 * A single Markov chain over frontier configurations.
+	 */
+	private class Chain implements Runnable {
+
+		private SplittableRandom random;
+		private volatile long deadline;
+		private int size, interior, mines;
+		private byte[] mine;
+		private int[] sums, open, block = new int[BLOCK_SIZE];
+		private byte[] trial = new byte[BLOCK_SIZE], chosen = new byte[BLOCK_SIZE], tried = new byte[BLOCK_SIZE];
+		private int frontierMines;
+		private long samples;
+		private long[] hits;
+		private double interiorHits;
+		private long[] batchHits;
+		private double[] batchInterior = new double[BATCHES];
+		private int batch, batchSize = 1, inBatch;
+
+		Chain(SplittableRandom random, long deadline) {
+			this.random = random;
+			this.deadline = deadline;
+			this.size = frontier.getFrontierSize();
+			this.interior = frontier.getUnknownCount() - size;
+			this.mines = frontier.getMines();
+			this.mine = new byte[size];
+			this.sums = new int[frontier.getConstraintCount()];
+			this.open = new int[sums.length];
+			this.hits = new long[size];
+			this.batchHits = new long[BATCHES * size];
+		}
+
+		@Override
+		public void run() {
+			if (!start())
+				return;
+			for (long sweep = 0; System.nanoTime() < deadline; sweep++) {
+				for (int i = 0; i < size; i++)
+					step();
+				if (sweep >= BURN_IN_SWEEPS)
+					sample();
+			}
+		}
+
+		/**
+		 * Adds the current configuration to the totals and to the current batch.
+		 */
+		private void sample() {
+			int base = batch * size;
+			for (int i = 0; i < size; i++) {
+				hits[i] += mine[i];
+				batchHits[base + i] += mine[i];
+			}
+			if (interior > 0) {
+				double p = (double) (mines - frontierMines) / interior;
+				interiorHits += p;
+				batchInterior[batch] += p;
+			}
+			samples++;
+			if (++inBatch < batchSize)
+				return;
+			inBatch = 0;
+			if (++batch < BATCHES)
+				return;
+			// All batches are full: merge pairs and double the batch size.
+			for (int b = 0; b < BATCHES / 2; b++) {
+				for (int i = 0; i < size; i++)
+					batchHits[b * size + i] = batchHits[2 * b * size + i] + batchHits[(2 * b + 1) * size + i];
+				batchInterior[b] = batchInterior[2 * b] + batchInterior[2 * b + 1];
+			}
+			Arrays.fill(batchHits, BATCHES / 2 * size, BATCHES * size, 0);
+			Arrays.fill(batchInterior, BATCHES / 2, BATCHES, 0);
+			batch = BATCHES / 2;
+			batchSize *= 2;
+		}
+
+		/**
+		 * Finds a first consistent configuration by randomised backtracking.
+		 * @return false if none was found before the deadline
+		 */
+		private boolean start() {
+			int[] open = new int[sums.length];
+			for (int c = 0; c < sums.length; c++)
+				open[c] = frontier.getConstraintCells(c).length;
+			byte[] tried = new byte[size];
+			double density = (double) mines / frontier.getUnknownCount();
+			long steps = 0;
+			int pos = 0;
+			while (true) {
+				if (pos == size) {
+					int rest = mines - frontierMines;
+					if (rest >= 0 && rest <= interior)
+						return true;
+					if (--pos < 0)
+						return false;
+					unassign(pos, open);
+					continue;
+				}
+				if ((++steps & 1023) == 0 && System.nanoTime() > deadline)
+					return false;
+				if (tried[pos] == 2) {
+					tried[pos] = 0;
+					if (--pos < 0)
+						return false;
+					unassign(pos, open);
+					continue;
+				}
+				mine[pos] = (byte) (tried[pos] == 0 ? (random.nextDouble() < density ? 1 : 0) : 1 - mine[pos]);
+				tried[pos]++;
+				if (assign(pos, open))
+					pos++;
+				else
+					unassign(pos, open);
+			}
+		}
+
+		/**
+		 * Adds an unknown to the partial configuration.
+		 * @return true if all of its constraints can still be satisfied
+		 */
+		private boolean assign(int pos, int[] open) {
+			boolean ok = (frontierMines += mine[pos]) <= mines;
+			for (int c : frontier.getCellConstraints(pos)) {
+				open[c]--;
+				sums[c] += mine[pos];
+				int needed = frontier.getConstraintMines(c) - sums[c];
+				if (needed < 0 || needed > open[c])
+					ok = false;
+			}
+			return ok;
+		}
+
+		/**
+		 * Removes an unknown from the partial configuration.
+		 */
+		private void unassign(int pos, int[] open) {
+			frontierMines -= mine[pos];
+			for (int c : frontier.getCellConstraints(pos)) {
+				open[c]++;
+				sums[c] -= mine[pos];
+			}
+		}
+
+		/**
+		 * Redraws a block of frontier cells from its distribution given the rest of the
+		 * configuration. The block is a random walk from a random cell, each step to a cell
+		 * sharing a constraint with the last, so which block is drawn does not depend on the
+		 * state, and a block can follow a chain of constraints across the frontier. Every
+		 * assignment of the block that meets its constraints is enumerated, weighted by the
+		 * interior layouts it leaves, and one is drawn.
+		 */
+		private void step() {
+			int count = 1;
+			block[0] = random.nextInt(size);
+			for (int attempt = 1; attempt < BLOCK_SIZE; attempt++) {
+				int[] next = partners[block[count - 1]];
+				if (next.length == 0)
+					break;
+				int y = next[random.nextInt(next.length)];
+				boolean seen = false;
+				for (int j = 0; j < count && !seen; j++)
+					seen = block[j] == y;
+				if (!seen)
+					block[count++] = y;
+			}
+
+			// Take the block out, leaving its cells open in their constraints.
+			int current = 0;
+			for (int i = 0; i < count; i++) {
+				int pos = block[i];
+				current += mine[pos];
+				for (int k : frontier.getCellConstraints(pos)) {
+					sums[k] -= mine[pos];
+					open[k]++;
+				}
+			}
+			frontierMines -= current;
+			int rest = mines - frontierMines - current;
+
+			// Depth-first over the assignments of the block, drawing one by weighted reservoir
+			// sampling. Weights are relative to the current assignment, which is always met.
+			double total = 0;
+			int depth = 0, placed = 0;
+			while (depth >= 0) {
+				if (depth == count) {
+					double weight = weightRatio(interior, rest, placed - current);
+					total += weight;
+					if (weight > 0 && random.nextDouble() * total < weight)
+						System.arraycopy(trial, 0, chosen, 0, count);
+					depth--;
+					continue;
+				}
+				int pos = block[depth];
+				if (tried[depth] > 0) {
+					placed -= trial[depth];
+					for (int k : frontier.getCellConstraints(pos)) {
+						open[k]++;
+						sums[k] -= trial[depth];
+					}
+				}
+				if (tried[depth] == 2) {
+					tried[depth--] = 0;
+					continue;
+				}
+				trial[depth] = tried[depth]++;
+				placed += trial[depth];
+				boolean ok = true;
+				for (int k : frontier.getCellConstraints(pos)) {
+					open[k]--;
+					sums[k] += trial[depth];
+					int needed = frontier.getConstraintMines(k) - sums[k];
+					if (needed < 0 || needed > open[k])
+						ok = false;
+				}
+				if (ok)
+					depth++;
+			}
+
+			// Put the block back with the assignment drawn.
+			for (int i = 0; i < count; i++) {
+				int pos = block[i];
+				mine[pos] = chosen[i];
+				frontierMines += chosen[i];
+				for (int k : frontier.getCellConstraints(pos)) {
+					sums[k] += chosen[i];
+					open[k]--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Per-cell mine probabilities with their standard errors. Shown cells have a probability
+	 * of zero.
+	 */
+	public class Estimate {
+
+		private double[] probabilities, errors;
+		private long samples;
+		private int chains;
+
+		private Estimate(Chain[] all) {
+			int cells = frontier.getRows() * frontier.getCols();
+			int unknowns = frontier.getUnknownCount(), size = frontier.getFrontierSize();
+			probabilities = new double[cells];
+			errors = new double[cells];
+
+			double[] means = new double[unknowns];
+			int batches = 0;
+			for (Chain chain : all) {
+				if (chain.samples == 0)
+					continue;
+				chains++;
+				samples += chain.samples;
+				batches += chain.batch;
+				for (int i = 0; i < size; i++)
+					means[i] += chain.hits[i];
+				for (int i = size; i < unknowns; i++)
+					means[i] += chain.interiorHits;
+			}
+			for (int i = 0; i < unknowns; i++)
+				means[i] /= Math.max(1, samples);
+
+			// Batch means: the spread of the complete batches around the overall mean, each
+			// weighted by its size, since chains may have reached different batch sizes.
+			double[] squares = new double[unknowns];
+			long batched = 0;
+			for (Chain chain : all) {
+				if (chain.samples == 0)
+					continue;
+				batched += (long) chain.batch * chain.batchSize;
+				for (int b = 0; b < chain.batch; b++) {
+					for (int i = 0; i < size; i++) {
+						double d = chain.batchHits[b * size + i] - means[i] * chain.batchSize;
+						squares[i] += d * d;
+					}
+					if (size == unknowns)
+						continue;
+					double d = chain.batchInterior[b] - means[size] * chain.batchSize;
+					for (int i = size; i < unknowns; i++)
+						squares[i] += d * d;
+				}
+			}
+
+			for (int i = 0; i < unknowns; i++) {
+				int cell = frontier.getCell(i);
+				if (chains == 0) {
+					// Nothing sampled in time (or no frontier): fall back to the mine density.
+					probabilities[cell] = (double) frontier.getMines() / unknowns;
+					errors[cell] = size == 0 ? 0 : 0.5;
+					continue;
+				}
+				double mean = means[i];
+				probabilities[cell] = mean;
+				errors[cell] = batches < 2 ? Math.sqrt(mean * (1 - mean) / samples)
+						: Math.sqrt(squares[i] * batches / (batches - 1)) / batched;
+			}
+		}
+
+		/**
+		 * Gets the estimated probability that the given cell is a mine.
+		 * @param row row of the cell
+		 * @param col col of the cell
+		 * @return mine probability
+		 */
+		public double getProbability(int row, int col) {
+			return probabilities[row * frontier.getCols() + col];
+		}
+
+		/**
+		 * Gets the standard error of the estimate for the given cell.
+		 * @param row row of the cell
+		 * @param col col of the cell
+		 * @return standard error
+		 */
+		public double getError(int row, int col) {
+			return errors[row * frontier.getCols() + col];
+		}
+
+		/**
+		 * Gets the total number of samples over all chains.
+		 * @return number of samples
+		 */
+		public long getSamples() {
+			return samples;
+		}
+
+		/**
+		 * Gets the number of chains that produced samples.
+		 * @return number of chains
+		 */
+		public int getChains() {
+			return chains;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * A game of Minesweeper as the board view plays it: the size of the board, the mine value
+ * and view value of each cell, and the moves. {@link Board} keeps everything on the heap and
+ * adds undo, hints and the topologies; the boards of {@link LargeBoard} are for boards too
+ * large for the heap, and only play the moves.
+ *
+ * Cells are addressed by row and col; the view values are those of {@link Board}, and the
+ * mine value is {@link Board#MINE} or the number of adjacent mines.
+ */
+public interface Minefield {
+
+	/**
+	 * Reveals an area of cells originating at the given row and col.
+	 * @param row row of square to be revealed
+	 * @param col col of square to be revealed
+	 * @return true if reveal was successful, false if out of bounds or on a mine
+	 */
+	boolean reveal(int row, int col);
+
+	/**
+	 * Moves the given cell on from Hidden to Flagged to Question Mark and back to Hidden.
+	 * @param row row of square to be flagged
+	 * @param col col of square to be flagged
+	 */
+	void flag(int row, int col);
+
+	/**
+	 * Returns true if the game is won, i.e. no cell without a mine is still hidden.
+	 * @return true if the game is won
+	 */
+	boolean isWon();
+
+	/**
+	 * Gets the mine value of the given cell.
+	 * @param row row of the cell
+	 * @param col col of the cell
+	 * @return {@link Board#MINE} or the number of adjacent mines
+	 */
+	int getValue(int row, int col);
+
+	/**
+	 * Gets the view value (Hidden, Shown, etc.) of the given cell.
+	 * @param row row of the cell
+	 * @param col col of the cell
+	 * @return view value of the cell
+	 */
+	int getView(int row, int col);
+
+	/**
+	 * Gets the number of rows in the board.
+	 * @return number of rows in the board
+	 */
+	int getRows();
+
+	/**
+	 * Gets the number of cols in the board.
+	 * @return number of cols in the board
+	 */
+	int getCols();
+
+	/**
+	 * Gets the number of mines on the board.
+	 * @return the mines
+	 */
+	int getMines();
+
+	/**
+	 * Gets the number of flagged squares.
+	 * @return the flags
+	 */
+	int getFlags();
+
+	/**
+	 * Gets the seed the mines were placed with.
+	 * @return the seed
+	 */
+	long getSeed();
+}
@@ -1,13 +1,26 @@
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker.State;
 import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
+import javafx.geometry.Bounds;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.geometry.Rectangle2D;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
@@ -18,12 +31,16 @@ import javafx.scene.control.Label;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
@@ -35,11 +52,76 @@ public class MinesweeperGUI extends Application {
 	private Scene scene;
 	private BorderPane root;
 	private BoardContainer board;
+	private ScrollPane boardPane;
+	private Minimap minimap;
+	private CheckMenuItem showMinimap;
+	
+	/**
+	 * Width and height of the minimap in px.
+	 */
+	private static final double MINIMAP_SIZE = 200;
+	
+	/**
+	 * Heap a custom board may take per cell: 4.25 B for the board, 5.3 B for the minimap and
+	 * 4 B for the 3BV scorer at the end of the game, rounded up. Boards may take up to half
+	 * of the heap, leaving the rest for undo history and the hint engine. Larger boards are
+	 * kept in a {@link SparseBoard} or a {@link MappedBoard} in this directory instead.
+	 */
+	private static final int BYTES_PER_CELL = 16;
+	private static final File LARGE_BOARD_DIR = new File(System.getProperty("java.io.tmpdir"));
+	
+	/**
+	 * Mine density at or below which boards too large for a {@link Board} are kept in a
+	 * {@link SparseBoard}. Its mine table takes 16 B per mine, so at this density it is
+	 * 0.25 B per cell, the same as its view pages once the cells are revealed.
+	 */
+	private static final double SPARSE_DENSITY = 1.0 / 64;
+	private static final int SPARSE_BYTES_PER_MINE = 16;
+	
+	/**
+	 * File the game statistics are kept in.
+	 */
+	private static final File STATS_FILE = new File(System.getProperty("user.home"), ".fxminesweeper-stats");
+	
+	/**
+	 * Opens, records to and queries the game statistics, in order, off the JavaFX thread.
+	 */
+	private final ExecutorService statsExecutor = Executors.newSingleThreadExecutor((runnable) -> { // public Thread newThread(Runnable runnable)
+		Thread thread = new Thread(runnable, "Game Stats");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/**
+	 * File the game in progress is kept in between runs.
+	 */
+	private static final File SESSION_FILE = new File(System.getProperty("user.home"), ".fxminesweeper-session");
+	
+	private GameStats stats;
+	
+	/**
+	 * Scores each finished game, and correlates the scores of won games with their times.
+	 * Used on the statistics thread only.
+	 */
+	private final BoardClassifier classifier = new BoardClassifier(0, Integer.MAX_VALUE);
+	private SpectatorServer spectators;
+	
+	/**
+	 * Port spectators connect to while the game is broadcast.
+	 */
+	private static final int SPECTATOR_PORT = 5757;
+	
+	/**
+	 * System property that, when true, prints the time from startup to the first frame.
+	 */
+	private static final String STARTUP_TIMING = "fxminesweeper.startupTiming";
+	private Stage statsStage;
+	private Runnable refreshStats;
 	
 	/**
 	 * Action to run when a game is won.
 	 */
-	private static final Runnable winAction = () -> { // public void run()
+	private final Runnable winAction = () -> { // public void run()
+		recordGame(true);
 		Alert a = new Alert(AlertType.INFORMATION);
 		a.setTitle("You Won!");
 		a.setHeaderText("You Won!");
@@ -50,7 +132,8 @@ public class MinesweeperGUI extends Application {
 	/**
 	 * Action to run when a game is lost.
 	 */
-	private static final Runnable loseAction = () -> { // public void run()
+	private final Runnable loseAction = () -> { // public void run()
+		recordGame(false);
 		Alert a = new Alert(AlertType.INFORMATION);
 		a.setTitle("You Lost!");
 		a.setHeaderText("You Lost!");
@@ -60,38 +143,81 @@ public class MinesweeperGUI extends Application {
 	
 	
 	public void start(Stage arg0) {
+		long startNanos = System.nanoTime();
 		stage = arg0;
 		
+		statsExecutor.execute(() -> { // public void run()
+			try {
+				stats = GameStats.open(STATS_FILE);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+		
 		root = new BorderPane();
 		
 		root.setTop(new MenuBar(fileMenu(), editMenu(), viewMenu()));
 		
-		board = new BoardContainer(new Board(Board.MEDIUM), 20, winAction, loseAction, stage);
+		boardPane = new ScrollPane();
+		boardPane.setFitToWidth(true);
+		boardPane.setFitToHeight(true);
+		boardPane.setPannable(true);
+		ChangeListener<Object> viewportListener = (observable, oldValue, newValue) -> updateViewport();
+		boardPane.hvalueProperty().addListener(viewportListener);
+		boardPane.vvalueProperty().addListener(viewportListener);
+		boardPane.viewportBoundsProperty().addListener(viewportListener);
+		root.setCenter(boardPane);
 		
-		root.setCenter(board.getBoardView());
+		Session session = null;
+		if(SESSION_FILE.exists()) {
+			try {
+				session = Session.read(SESSION_FILE);
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+		if(session != null) {
+			BoardContainer resumed = new BoardContainer(session.getBoard(), session.getCellSize(), winAction, loseAction, stage);
+			resumed.resume(session.getUndoHead(), session.getMoves(), session.getElapsedMillis());
+			showBoard(resumed);
+			scene = new Scene(root, session.getWidth(), session.getHeight());
+		} else {
+			showBoard(new BoardContainer(new Board(Board.MEDIUM), 20, winAction, loseAction, stage));
+			scene = new Scene(root);
+		}
 		
-		scene = new Scene(root);
 		scene.widthProperty().addListener(new ChangeListener<Number>() {
 			@Override
 			public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-				board.resize(scene.getWidth(), scene.getHeight() - root.getTop().minHeight(-1));
+				resizeBoard();
 			}
 		});
 		scene.heightProperty().addListener(new ChangeListener<Number>() {
 			@Override
 			public void changed(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
-				board.resize(scene.getWidth(), scene.getHeight() - root.getTop().minHeight(-1));
+				resizeBoard();
 			}
 		});
 		stage.setScene(scene);
 		
-		newGameStage();
-		
 		stage.setTitle("Minesweeper");
 		stage.setMinHeight(400);
 		stage.setMinWidth(400);
 		stage.show();
 		stage.centerOnScreen();
+		
+		if(Boolean.getBoolean(STARTUP_TIMING)) {
+			String source = session != null ? "resumed session" : "new game";
+			new AnimationTimer() {
+				@Override
+				public void handle(long now) {
+					stop();
+					System.out.println("First frame (" + source + ") " + (System.nanoTime() - startNanos) / 1000000
+							+ " ms after start, " + (System.currentTimeMillis()
+							- ManagementFactory.getRuntimeMXBean().getStartTime()) + " ms after launch");
+				}
+			}.start();
+		}
 	}
 	
 	/**
@@ -105,15 +231,17 @@ public class MinesweeperGUI extends Application {
 		
 		MenuItem newGame = new MenuItem("New Game");
 		newGame.setOnAction((event) -> { // public void handle(ActionEvent event)
+			if(newGameStage == null)
+				newGameStage();
 			newGameStage.show();
 		});
 		newGame.setAccelerator(new KeyCodeCombination(KeyCode.N, KeyCombination.CONTROL_DOWN));
 		
 		MenuItem quickGame = new MenuItem("Quick Game");
 		quickGame.setOnAction((event) -> {
-			board = new BoardContainer(new Board(board.getBoard().getSize()), 20, winAction, loseAction, stage);
-			board.resize(scene.getWidth(), scene.getHeight() - root.getTop().minHeight(-1));
-            root.setCenter(board.getBoardView());
+			Minefield current = board.getField();
+			int size = board.getBoard() != null ? board.getBoard().getSize() : Board.CUSTOM;
+			startGame(size, current.getRows(), current.getCols(), current.getMines());
 		});
 		quickGame.setAccelerator(new KeyCodeCombination(KeyCode.Q, KeyCombination.CONTROL_DOWN));
 		
@@ -155,20 +283,24 @@ public class MinesweeperGUI extends Application {
             File load = chooser.showOpenDialog(stage);
             if(load == null)
                 return;
-            board = new BoardContainer(load, 20, winAction, loseAction, stage);
-            root.setCenter(board.getBoardView());
-            board.resize(scene.getWidth(), scene.getHeight() - root.getTop().minHeight(-1));
+            showBoard(new BoardContainer(load, 20, winAction, loseAction, stage));
 		});
 		loadGame.setAccelerator(new KeyCodeCombination(KeyCode.L, KeyCombination.CONTROL_DOWN));
 		
-		file.getItems().addAll(newGame, quickGame, saveGame, saveGameAs, loadGame);
+		MenuItem statistics = new MenuItem("Statistics");
+		statistics.setOnAction((event) -> { // public void handle(ActionEvent event)
+			showStats();
+		});
+		statistics.setAccelerator(new KeyCodeCombination(KeyCode.T, KeyCombination.CONTROL_DOWN));
+		
+		file.getItems().addAll(newGame, quickGame, saveGame, saveGameAs, loadGame, statistics);
 		
 		return file;
 	}
 	
 	/**
      * Sets up the "Edit" menu for the menu bar.
-     * Defines the Restart, Undo, and Redo actions and
+     * Defines the Restart, Undo, Redo, and Hint actions and
      * corresponding menu items.
      * @return "Edit" menu
      */
@@ -193,14 +325,20 @@ public class MinesweeperGUI extends Application {
 		});
 		redo.setAccelerator(new KeyCodeCombination(KeyCode.Z, KeyCombination.CONTROL_DOWN, KeyCombination.SHIFT_DOWN));
 		
-		edit.getItems().addAll(restart, undo, redo);
+		MenuItem hint = new MenuItem("Hint");
+		hint.setOnAction((event) -> { // public void handle(ActionEvent event)
+			board.hint();
+		});
+		hint.setAccelerator(new KeyCodeCombination(KeyCode.H, KeyCombination.CONTROL_DOWN));
+		
+		edit.getItems().addAll(restart, undo, redo, hint);
 		
 		return edit;
 	}
 	
 	/**
      * Sets up the "View" menu for the menu bar.
-     * Defines the Fullscreen action and the Fullscreen menu item.
+     * Defines the Fullscreen, Minimap and Broadcast actions and corresponding menu items.
      * @return "View" menu
      */
 	private Menu viewMenu() {
@@ -218,11 +356,43 @@ public class MinesweeperGUI extends Application {
 		});
 		fullscreen.setAccelerator(new KeyCodeCombination(KeyCode.F12));
 		
-		view.getItems().addAll(fullscreen);
+		showMinimap = new CheckMenuItem("Minimap");
+		showMinimap.setOnAction((event) -> { // public void handle(ActionEvent event)
+			root.setRight(showMinimap.isSelected() ? minimap : null);
+			resizeBoard();
+		});
+		showMinimap.setAccelerator(new KeyCodeCombination(KeyCode.M, KeyCombination.CONTROL_DOWN));
+		
+		CheckMenuItem broadcast = new CheckMenuItem("Broadcast to Spectators");
+		broadcast.setOnAction((event) -> { // public void handle(ActionEvent event)
+			try {
+				if(broadcast.isSelected()) {
+					spectators = new SpectatorServer(SPECTATOR_PORT);
+					if(board.getBoard() != null)
+						spectators.setBoard(board.getBoard());
+				} else {
+					spectators.close();
+					spectators = null;
+				}
+			} catch (IOException e) {
+				broadcast.setSelected(false);
+				Alert a = new Alert(AlertType.ERROR);
+				a.setTitle("Broadcast Failed");
+				a.setHeaderText("Broadcast Failed");
+				a.setContentText("Spectators cannot connect on port " + SPECTATOR_PORT + ": " + e.getMessage());
+				a.show();
+			}
+		});
+		
+		view.getItems().addAll(fullscreen, showMinimap, broadcast);
 		
 		return view;
 	}
 	
+	/**
+	 * Builds the New Game window. Called the first time the window is shown, so it does not
+	 * hold up startup.
+	 */
 	private void newGameStage() {
 	    newGameStage = new Stage();
         newGameStage.setTitle("New Game");
@@ -238,41 +408,98 @@ public class MinesweeperGUI extends Application {
         GridPane.setHalignment(newGameLabel, HPos.CENTER);
         
         ComboBox<String> comboBox = new ComboBox<String>();
-        comboBox.getItems().addAll("Small", "Medium", "Large", "Humongous");
+        comboBox.getItems().addAll("Small", "Medium", "Large", "Humongous", "Custom");
         comboBox.setValue("Small");
         gridPane.add(comboBox, 0, 1, 2, 1);
         GridPane.setHalignment(comboBox, HPos.CENTER);
         
+        TextField rowsField = new TextField("100"), colsField = new TextField("100"), minesField = new TextField("1500");
+        TextField[] fields = { rowsField, colsField, minesField };
+        String[] names = { "Rows", "Cols", "Mines" };
+        for(int i = 0; i < fields.length; i++) {
+            fields[i].setPrefColumnCount(8);
+            fields[i].disableProperty().bind(comboBox.valueProperty().isNotEqualTo("Custom"));
+            gridPane.add(new Label(names[i]), 0, 2 + i);
+            gridPane.add(fields[i], 1, 2 + i);
+        }
+        
+        ProgressBar progressBar = new ProgressBar(0);
+        progressBar.setMaxWidth(Double.MAX_VALUE);
+        Label status = new Label();
+        VBox progress = new VBox(4, status, progressBar);
+        progress.setVisible(false);
+        gridPane.add(progress, 0, 5, 2, 1);
+        
         Button startButton = new Button("Start");
+        Button cancelButton = new Button("Cancel");
         startButton.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
+                int size = Board.SMALL, rows = 0, cols = 0, mines = 0;
                 switch(comboBox.getSelectionModel().getSelectedItem()) {
-                case "Small":
-                    board = new BoardContainer(new Board(Board.SMALL), 20, winAction, loseAction, stage);
-                    break;
-                    
                 case "Medium":
-                    board = new BoardContainer(new Board(Board.MEDIUM), 20, winAction, loseAction, stage);
+                    size = Board.MEDIUM;
                     break;
                     
                 case "Large":
-                    board = new BoardContainer(new Board(Board.LARGE), 20, winAction, loseAction, stage);
+                    size = Board.LARGE;
                     break;
                     
                 case "Humongous":
-                    board = new BoardContainer(new Board(Board.HUMONGOUS), 20, winAction, loseAction, stage);
+                    size = Board.HUMONGOUS;
+                    break;
+                    
+                case "Custom":
+                    size = Board.CUSTOM;
+                    try {
+                        rows = Integer.parseInt(rowsField.getText().trim());
+                        cols = Integer.parseInt(colsField.getText().trim());
+                        mines = Integer.parseInt(minesField.getText().trim());
+                    } catch (NumberFormatException e) {
+                        rows = 0;
+                    }
+                    long cells = (long)rows * cols;
+                    boolean fits = cells <= maxBoardCells() || (isSparse(cells, mines)
+                            ? (long)mines * SPARSE_BYTES_PER_MINE <= Runtime.getRuntime().maxMemory() / 2
+                            : cells <= LARGE_BOARD_DIR.getUsableSpace());
+                    if(rows < 1 || cols < 1 || mines < 0 || mines >= cells || !fits) {
+                        Alert a = new Alert(AlertType.ERROR);
+                        a.setTitle("Invalid Board Size");
+                        a.setHeaderText("Invalid Board Size");
+                        a.setContentText("Rows and cols must be at least 1, there must be fewer mines than cells, and "
+                                + "the board must fit in memory, or on disk in " + LARGE_BOARD_DIR + ".");
+                        a.show();
+                        return;
+                    }
                     break;
                 }
                 
-                board.resize(scene.getWidth(), scene.getHeight() - root.getTop().minHeight(-1));
-                
-                root.setCenter(board.getBoardView());
-                newGameStage.hide();
+                GameTask task = startGame(size, rows, cols, mines);
+                progressBar.progressProperty().bind(task.progressProperty());
+                status.textProperty().bind(task.messageProperty());
+                progress.setVisible(true);
+                startButton.setDisable(true);
+                comboBox.setDisable(true);
+                cancelButton.setOnAction((cancelEvent) -> { // public void handle(ActionEvent cancelEvent)
+                    task.cancel();
+                });
+                task.runningProperty().addListener((observable, wasRunning, running) -> {
+                    if(running)
+                        return;
+                    progressBar.progressProperty().unbind();
+                    status.textProperty().unbind();
+                    progress.setVisible(false);
+                    startButton.setDisable(false);
+                    comboBox.setDisable(false);
+                    cancelButton.setOnAction((cancelEvent) -> { // public void handle(ActionEvent cancelEvent)
+                        newGameStage.hide();
+                    });
+                    if(task.getState() == State.SUCCEEDED)
+                        newGameStage.hide();
+                });
             }
         });
         
-        Button cancelButton = new Button("Cancel");
         cancelButton.setOnAction(new EventHandler<ActionEvent>() {
             @Override
             public void handle(ActionEvent event) {
@@ -283,7 +510,7 @@ public class MinesweeperGUI extends Application {
         HBox buttons = new HBox();
         buttons.setSpacing(10);
         buttons.getChildren().addAll(startButton, cancelButton);
-        gridPane.add(buttons, 0, 2, 2, 1);
+        gridPane.add(buttons, 0, 6, 2, 1);
         gridPane.setPadding(new Insets(10, 70, 20, 70));
         
         Scene newGameScene = new Scene(gridPane);
@@ -291,6 +518,403 @@ public class MinesweeperGUI extends Application {
         newGameStage.centerOnScreen();
 	}
 	
+	/**
+	 * Records the game that just ended in the game statistics. The board is scored and the
+	 * record written on the statistics thread; won games are also added to the correlations
+	 * of the classifier. Only games on a {@link Board} are recorded,
+	 * since the others are too large to score.
+	 * @param won true if the game was won
+	 */
+	private void recordGame(boolean won) {
+		Board played = board.getBoard();
+		if(played == null)
+			return;
+		long duration = board.getElapsedMillis();
+		int moves = board.getMoves();
+		statsExecutor.execute(() -> { // public void run()
+			if(stats == null)
+				return;
+			BoardScorer scorer = classifier.getScorer();
+			if(won)
+				classifier.recordSolve(played, duration);
+			else
+				scorer.score(played);
+			try {
+				stats.record(played, won, duration, moves, scorer.get3BV());
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+	}
+	
+	/**
+	 * Shows the statistics window, building it the first time.
+	 */
+	private void showStats() {
+		if(statsStage == null) {
+			statsStage = new Stage();
+			statsStage.setTitle("Statistics");
+			
+			GridPane table = new GridPane();
+			table.setHgap(20);
+			table.setVgap(6);
+			
+			ComboBox<String> last = new ComboBox<String>();
+			last.getItems().addAll("10", "100", "1000", "All");
+			last.setValue("100");
+			refreshStats = () -> { // public void run()
+				fillStats(table, last.getValue().equals("All") ? Integer.MAX_VALUE : Integer.parseInt(last.getValue()));
+			};
+			last.setOnAction((event) -> { // public void handle(ActionEvent event)
+				refreshStats.run();
+			});
+			HBox lastBox = new HBox(10, new Label("Last games per size:"), last);
+			lastBox.setAlignment(Pos.CENTER_LEFT);
+			
+			VBox statsBox = new VBox(12, lastBox, table);
+			statsBox.setPadding(new Insets(10, 20, 20, 20));
+			statsStage.setScene(new Scene(statsBox));
+		}
+		refreshStats.run();
+		statsStage.show();
+		statsStage.toFront();
+	}
+	
+	/**
+	 * Fills the statistics table with the win rate and best time of each board size over its
+	 * last n games, and the correlations of the scores of the games won this run with their
+	 * times. The indexes are queried on the statistics thread.
+	 * @param table table to fill
+	 * @param n number of games per size
+	 */
+	private void fillStats(GridPane table, int n) {
+		statsExecutor.execute(() -> { // public void run()
+			ArrayList<String[]> rows = new ArrayList<String[]>();
+			rows.add(new String[] { "Size", "Games", "Win Rate", "Best Time" });
+			if(stats != null)
+				for(GameStats.Size size : stats.getSizes()) {
+					long best = stats.getBestTime(size, n);
+					rows.add(new String[] { size.toString(), "" + Math.min(n, stats.getGames(size)),
+							String.format("%.1f%%", 100 * stats.getWinRate(size, n)),
+							best < 0 ? "-" : String.format("%.3f s", best / 1000.0) });
+				}
+			addCorrelation(rows, "3BV vs Time", classifier.get3BVTime());
+			addCorrelation(rows, "Openings vs Time", classifier.getOpeningsTime());
+			addCorrelation(rows, "Isolated vs Time", classifier.getIsolatedTime());
+			Platform.runLater(() -> { // public void run()
+				table.getChildren().clear();
+				for(int r = 0; r < rows.size(); r++)
+					for(int c = 0; c < rows.get(r).length; c++) {
+						Label label = new Label(rows.get(r)[c]);
+						if(r == 0)
+							label.setStyle("-fx-font-weight: bold;");
+						table.add(label, c, r);
+					}
+			});
+		});
+	}
+	
+	/**
+	 * Adds a row for a correlation to the statistics table, once it has two games.
+	 * @param rows rows of the table
+	 * @param name name of the correlation
+	 * @param correlation correlation to add
+	 */
+	private static void addCorrelation(ArrayList<String[]> rows, String name, BoardClassifier.Correlation correlation) {
+		if(correlation.getCount() >= 2)
+			rows.add(new String[] { name, "" + correlation.getCount(), String.format("r = %.2f", correlation.get()), "" });
+	}
+	
+	@Override
+	public void stop() throws InterruptedException, IOException {
+		try {
+			if(board != null && board.getBoard() != null && !board.isFinished())
+				Session.write(SESSION_FILE, board, scene.getWidth(), scene.getHeight());
+			else
+				SESSION_FILE.delete();
+			if(board != null)
+				board.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if(spectators != null)
+			spectators.close();
+		statsExecutor.execute(() -> { // public void run()
+			try {
+				if(stats != null)
+					stats.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+		statsExecutor.shutdown();
+		statsExecutor.awaitTermination(5, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Starts generating a new board, and building its view and minimap, on a background
+	 * thread. The board is shown once it is finished, unless the task is cancelled first.
+	 * @param size board size constant, or {@link Board#CUSTOM} to use the given dimensions
+	 * @param rows number of rows in a custom board
+	 * @param cols number of cols in a custom board
+	 * @param mines number of mines in a custom board
+	 * @return the running task
+	 */
+	private GameTask startGame(int size, int rows, int cols, int mines) {
+		GameTask task = new GameTask(size, rows, cols, mines, availableWidth(), availableHeight());
+		task.setOnSucceeded((event) -> { // public void handle(WorkerStateEvent event)
+			showBoard(task.getValue(), task.getMinimap());
+		});
+		task.setOnFailed((event) -> { // public void handle(WorkerStateEvent event)
+			Alert a = new Alert(AlertType.ERROR);
+			a.setTitle("New Game Failed");
+			a.setHeaderText("New Game Failed");
+			a.setContentText("The board could not be created: " + task.getException());
+			a.show();
+		});
+		Thread thread = new Thread(task, "Board Generator");
+		thread.setDaemon(true);
+		thread.start();
+		return task;
+	}
+	
+	/**
+	 * Shows the given board in the main window, with a new minimap of it.
+	 * @param newBoard board to show
+	 */
+	private void showBoard(BoardContainer newBoard) {
+		showBoard(newBoard, new Minimap(newBoard.getBoard(), MINIMAP_SIZE));
+	}
+	
+	/**
+	 * Shows the given board and minimap of it in the main window, closing the board shown
+	 * before.
+	 * @param newBoard board to show
+	 * @param newMinimap minimap of the board, or null for a board too large for one
+	 */
+	private void showBoard(BoardContainer newBoard, Minimap newMinimap) {
+		if(board != null) {
+			try {
+				board.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		board = newBoard;
+		boardPane.setContent(board.getBoardView());
+		
+		minimap = newMinimap;
+		if(minimap != null) {
+			minimap.setOnPan((x, y) -> { // public void accept(Double x, Double y)
+				if(board.isVirtual()) {
+					board.scrollTo(x, y);
+					return;
+				}
+				Bounds viewport = boardPane.getViewportBounds(), content = board.getBoardView().getLayoutBounds();
+				boardPane.setHvalue(scrollValue(x * content.getWidth() - viewport.getWidth() / 2, content.getWidth() - viewport.getWidth()));
+				boardPane.setVvalue(scrollValue(y * content.getHeight() - viewport.getHeight() / 2, content.getHeight() - viewport.getHeight()));
+			});
+			board.addChangeListener(minimap::update);
+			BorderPane.setMargin(minimap, new Insets(10));
+		}
+		board.addViewportListener(this::updateViewport);
+		board.addChangeListener((cell) -> { // public void accept(int cell)
+			if(spectators != null)
+				spectators.changed(cell);
+		});
+		board.addMoveListener(() -> { // public void run()
+			if(spectators != null)
+				spectators.moved();
+		});
+		if(spectators != null && board.getBoard() != null)
+			spectators.setBoard(board.getBoard());
+		if(showMinimap.isSelected())
+			root.setRight(minimap);
+		
+		resizeBoard();
+	}
+	
+	/**
+	 * Resizes the board to fit the space left beside the menu bar and minimap.
+	 */
+	private void resizeBoard() {
+		if(scene == null)
+			return;
+		board.resize(availableWidth(), availableHeight());
+		updateViewport();
+	}
+	
+	/**
+	 * Gets the width left for the board view beside the minimap.
+	 * @return width of the board view in px
+	 */
+	private double availableWidth() {
+		double width = scene.getWidth();
+		if(root.getRight() != null)
+			width -= root.getRight().prefWidth(-1) + 20;
+		return width;
+	}
+	
+	/**
+	 * Gets the height left for the board view below the menu bar.
+	 * @return height of the board view in px
+	 */
+	private double availableHeight() {
+		return scene.getHeight() - root.getTop().minHeight(-1);
+	}
+	
+	/**
+	 * Moves the minimap's outline of the main view to the part of the board scrolled to.
+	 */
+	private void updateViewport() {
+		if(minimap == null)
+			return;
+		if(board.isVirtual()) {
+			Rectangle2D viewport = board.getViewport();
+			minimap.setViewport(viewport.getMinX(), viewport.getMinY(), viewport.getWidth(), viewport.getHeight());
+			return;
+		}
+		Bounds viewport = boardPane.getViewportBounds(), content = board.getBoardView().getLayoutBounds();
+		if(content.getWidth() <= 0 || content.getHeight() <= 0)
+			return;
+		double width = Math.min(1, viewport.getWidth() / content.getWidth());
+		double height = Math.min(1, viewport.getHeight() / content.getHeight());
+		minimap.setViewport(boardPane.getHvalue() * (1 - width), boardPane.getVvalue() * (1 - height), width, height);
+	}
+	
+	/**
+	 * Gets the largest number of cells a {@link Board} may have in this heap, see
+	 * BYTES_PER_CELL.
+	 * @return number of cells
+	 */
+	private static long maxBoardCells() {
+		return Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 2 / BYTES_PER_CELL);
+	}
+	
+	/**
+	 * Returns true if a board too large for a {@link Board} has few enough mines to be kept
+	 * in a {@link SparseBoard}, see SPARSE_DENSITY.
+	 * @param cells number of cells in the board
+	 * @param mines number of mines in the board
+	 * @return true for a sparse board
+	 */
+	private static boolean isSparse(long cells, int mines) {
+		return mines <= cells * SPARSE_DENSITY;
+	}
+	
+	/**
+	 * Converts a scroll offset in px to a ScrollPane value between 0 and 1.
+	 * @param offset offset of the view in px
+	 * @param range largest offset in px
+	 * @return scroll value
+	 */
+	private static double scrollValue(double offset, double range) {
+		if(range <= 0)
+			return 0;
+		return Math.max(0, Math.min(1, offset / range));
+	}
+	
+	/**
+	 * A task that generates a board and builds its board view and minimap. Only the
+	 * finished view is attached to the scene, on the JavaFX thread. Custom boards too
+	 * large for a {@link Board} are kept in a {@link SparseBoard} if they have few mines,
+	 * or else in a {@link MappedBoard} in a temporary file, and have no minimap.
+	 * 
+	 * Cancelling the task interrupts it, which stops the generation and building loops
+	 * early. A board that was already generated is closed, deleting its temporary file.
+	 */
+	private class GameTask extends Task<BoardContainer> {
+		
+		private int size, rows, cols, mines;
+		private double width, height;
+		private Minimap builtMinimap;
+		private volatile Minefield generated;
+		
+		/**
+		 * Creates a task for a board of the given size.
+		 * @param size board size constant, or {@link Board#CUSTOM} to use the given dimensions
+		 * @param rows number of rows in a custom board
+		 * @param cols number of cols in a custom board
+		 * @param mines number of mines in a custom board
+		 * @param width width of the board view in px
+		 * @param height height of the board view in px
+		 */
+		public GameTask(int size, int rows, int cols, int mines, double width, double height) {
+			this.size = size;
+			this.rows = rows;
+			this.cols = cols;
+			this.mines = mines;
+			this.width = width;
+			this.height = height;
+		}
+		
+		@Override
+		protected BoardContainer call() throws IOException {
+			updateMessage("Generating board...");
+			updateProgress(-1, 1);
+			Minefield newBoard;
+			if(size != Board.CUSTOM) {
+				newBoard = new Board(size);
+			} else if((long)rows * cols <= maxBoardCells()) {
+				newBoard = new Board(rows, cols, mines);
+			} else if(isSparse((long)rows * cols, mines)) {
+				newBoard = new SparseBoard(rows, cols, mines);
+			} else {
+				newBoard = MappedBoard.createTemp(LARGE_BOARD_DIR, rows, cols, mines, new Random().nextLong());
+			}
+			generated = newBoard;
+			
+			try {
+				Board.checkCancelled();
+				updateMessage("Building board view...");
+				int cellSize = BoardContainer.cellSize(newBoard.getRows(), newBoard.getCols(), width, height);
+				BoardContainer container = new BoardContainer(newBoard, cellSize, winAction, loseAction, stage,
+						(fraction) -> updateProgress(fraction, 1));
+				
+				if(container.getBoard() != null) {
+					updateMessage("Building minimap...");
+					updateProgress(-1, 1);
+					builtMinimap = new Minimap(container.getBoard(), MINIMAP_SIZE);
+				}
+				return container;
+			} catch (RuntimeException e) {
+				closeGenerated();
+				throw e;
+			}
+		}
+		
+		/**
+		 * Closes the board of a task cancelled after it was generated, including one
+		 * cancelled after the view was finished, whose result is thrown away.
+		 */
+		@Override
+		protected void cancelled() {
+			closeGenerated();
+		}
+		
+		/**
+		 * Closes the generated board, if it is kept in a file, deleting the file.
+		 */
+		private void closeGenerated() {
+			Minefield board = generated;
+			if(board instanceof MappedBoard) {
+				try {
+					((MappedBoard)board).close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		/**
+		 * Gets the minimap built by this task.
+		 * @return the minimap, or null if the board is too large for one
+		 */
+		public Minimap getMinimap() {
+			return builtMinimap;
+		}
+	}
+	
 	public static void main(String[] args) {
 		launch(args);
 	}
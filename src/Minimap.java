@@ -0,0 +1,191 @@
+import java.util.function.BiConsumer;
+
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+/**
+ * An overview of the whole board, drawn from a mipmap of the view state: level 0 has one
+ * pixel per cell, and each level above it averages 2x2 pixels of the level below. The level
+ * that fits the panel is shown, scaled up if the board is small.
+ *
+ * Changed cells are passed to {@link #update(int)}, which redraws the cell's pixel and its
+ * parents, one per level, stopping early once a parent comes out unchanged. Redrawing costs
+ * time in proportion to the change, not to the board. Clicking the minimap pans the main
+ * view to the clicked point.
+ */
+public class Minimap extends Pane {
+
+	/**
+	 * Largest side, in pixels, of the level shown.
+	 */
+	private static final int MAX_LEVEL_SIZE = 256;
+
+	private static final int HIDDEN_COLOR = 0xff8c8c8c, EMPTY_COLOR = 0xfff0ffff,
+			NUMBER_COLOR = 0xffc0d0d0, FLAGGED_COLOR = 0xffff4500, QMARK_COLOR = 0xffffa500;
+
+	private Board board;
+	private int[][] levels;
+	private int[] widths, heights;
+	private int shownLevel;
+	private PixelWriter writer;
+	private ImageView imageView;
+	private Rectangle viewport;
+	private BiConsumer<Double, Double> panAction;
+
+	/**
+	 * Creates a minimap of the given board. If the calling thread is interrupted, building
+	 * stops with a CancellationException.
+	 * @param board board to show
+	 * @param size width and height of the panel in px
+	 */
+	public Minimap(Board board, double size) {
+		this.board = board;
+
+		int count = 1;
+		for (int w = board.getCols(), h = board.getRows(); w > 1 || h > 1; w = (w + 1) / 2, h = (h + 1) / 2)
+			count++;
+		levels = new int[count][];
+		widths = new int[count];
+		heights = new int[count];
+		widths[0] = board.getCols();
+		heights[0] = board.getRows();
+		for (int l = 0; l < count; l++) {
+			if (l > 0) {
+				widths[l] = (widths[l - 1] + 1) / 2;
+				heights[l] = (heights[l - 1] + 1) / 2;
+			}
+			levels[l] = new int[widths[l] * heights[l]];
+		}
+		while (widths[shownLevel] > MAX_LEVEL_SIZE || heights[shownLevel] > MAX_LEVEL_SIZE)
+			shownLevel++;
+
+		for (int cell = 0; cell < levels[0].length; cell++) {
+			if ((cell & Board.CANCEL_CHECK_MASK) == 0)
+				Board.checkCancelled();
+			levels[0][cell] = color(cell);
+		}
+		for (int l = 1; l < count; l++)
+			for (int y = 0; y < heights[l]; y++) {
+				Board.checkCancelled();
+				for (int x = 0; x < widths[l]; x++)
+					levels[l][y * widths[l] + x] = average(l, x, y);
+			}
+
+		WritableImage image = new WritableImage(widths[shownLevel], heights[shownLevel]);
+		writer = image.getPixelWriter();
+		for (int y = 0; y < heights[shownLevel]; y++)
+			for (int x = 0; x < widths[shownLevel]; x++)
+				writer.setArgb(x, y, levels[shownLevel][y * widths[shownLevel] + x]);
+
+		imageView = new ImageView(image);
+		imageView.setSmooth(false);
+		imageView.setPreserveRatio(true);
+		imageView.setFitWidth(size);
+		imageView.setFitHeight(size);
+
+		viewport = new Rectangle();
+		viewport.setFill(Color.TRANSPARENT);
+		viewport.setStroke(Color.DODGERBLUE);
+		viewport.setMouseTransparent(true);
+		setViewport(0, 0, 1, 1);
+
+		imageView.setOnMouseClicked((mouseEvent) -> { // public void handle(MouseEvent mouseEvent)
+			if (panAction != null)
+				panAction.accept(mouseEvent.getX() / imageView.getBoundsInLocal().getWidth(),
+						mouseEvent.getY() / imageView.getBoundsInLocal().getHeight());
+		});
+		imageView.setOnMouseDragged(imageView.getOnMouseClicked());
+
+		getChildren().addAll(imageView, viewport);
+		setPrefSize(size, size);
+		setMaxSize(size, size);
+	}
+
+	/**
+	 * Redraws a changed cell and its parents in the levels above.
+	 * @param cell changed cell (row * cols + col)
+	 */
+	public void update(int cell) {
+		int x = cell % widths[0], y = cell / widths[0];
+		int color = color(cell);
+		if (levels[0][cell] == color)
+			return;
+		levels[0][cell] = color;
+		if (shownLevel == 0)
+			writer.setArgb(x, y, color);
+		for (int l = 1; l < levels.length; l++) {
+			x /= 2;
+			y /= 2;
+			color = average(l, x, y);
+			if (levels[l][y * widths[l] + x] == color)
+				return;
+			levels[l][y * widths[l] + x] = color;
+			if (l == shownLevel)
+				writer.setArgb(x, y, color);
+		}
+	}
+
+	/**
+	 * Gets the colour of a cell on level 0.
+	 */
+	private int color(int cell) {
+		int r = cell / widths[0], c = cell % widths[0];
+		switch (board.getView(r, c)) {
+		case Board.SHOWN:
+			return board.getValue(r, c) == 0 ? EMPTY_COLOR : NUMBER_COLOR;
+		case Board.FLAGGED:
+			return FLAGGED_COLOR;
+		case Board.QMARK:
+			return QMARK_COLOR;
+		default:
+			return HIDDEN_COLOR;
+		}
+	}
+
+	/**
+	 * Averages, channel by channel, the up to 4 pixels below a pixel of the given level.
+	 */
+	private int average(int l, int x, int y) {
+		int[] below = levels[l - 1];
+		int w = widths[l - 1], h = heights[l - 1];
+		int a = 0, r = 0, g = 0, b = 0, n = 0;
+		for (int by = 2 * y; by < Math.min(h, 2 * y + 2); by++)
+			for (int bx = 2 * x; bx < Math.min(w, 2 * x + 2); bx++) {
+				int argb = below[by * w + bx];
+				a += argb >>> 24;
+				r += (argb >> 16) & 0xff;
+				g += (argb >> 8) & 0xff;
+				b += argb & 0xff;
+				n++;
+			}
+		return (a / n) << 24 | (r / n) << 16 | (g / n) << 8 | (b / n);
+	}
+
+	/**
+	 * Sets the part of the board the main view shows, as fractions of the board size.
+	 * @param x left edge of the view
+	 * @param y top edge of the view
+	 * @param width width of the view
+	 * @param height height of the view
+	 */
+	public void setViewport(double x, double y, double width, double height) {
+		double w = imageView.getBoundsInLocal().getWidth(), h = imageView.getBoundsInLocal().getHeight();
+		viewport.setX(x * w);
+		viewport.setY(y * h);
+		viewport.setWidth(Math.min(1, width) * w);
+		viewport.setHeight(Math.min(1, height) * h);
+	}
+
+	/**
+	 * Sets the action to run when the minimap is clicked. It is given the clicked point as
+	 * fractions of the board width and height.
+	 * @param panAction action to run on a click
+	 */
+	public void setOnPan(BiConsumer<Double, Double> panAction) {
+		this.panAction = panAction;
+	}
+}
@@ -0,0 +1,330 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.geometry.Point2D;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.stage.Stage;
+
+/**
+ * Measures the performance of the board view without a display, so UI regressions can be
+ * caught by comparing reports across builds. Each board is shown in a window of its own and
+ * played by a script of reveals and flags, drawn from a fixed seed, that never hits a mine,
+ * followed by a series of window resizes. Boards are placed from a fixed seed too, so every
+ * run plays the same moves on the same boards.
+ *
+ * Moves are played as mouse clicks: a MOUSE_CLICKED event, primary for a reveal and secondary
+ * for a flag, is fired at the button of the Cell, or at the point of the cell on the canvas of
+ * a canvas view, which is scrolled to the cell first. The events are dispatched to the node
+ * directly rather than picked from the scene, so hit testing is not measured.
+ *
+ * For every board the report holds, in ms: the time to build the view, the time of each
+ * reveal and flag click, from the event to the board and the view updated, and of each
+ * {@link BoardContainer#resize(double, double)}; the CSS and layout part of each pulse; and
+ * the interval between frames while the script runs. Each is summarized as count, mean,
+ * median, 95th percentile and max. The heap in use after a full GC, before the board is
+ * built and after it is closed, shows how much memory a game leaves behind.
+ *
+ * Run with the Monocle headless platform on the classpath, e.g. from the openjfx-monocle
+ * artifact. The glass, Monocle and prism properties it needs are set unless given on the
+ * command line. Unlike the game, this needs JavaFX 9 or later, for Platform.startup,
+ * Platform.requestNextPulse and the scene pulse listeners.
+ *
+ *   java -cp bin:monocle.jar:javafx.jar RenderBenchmark [report.json] [ROWSxCOLSxMINES ...]
+ *
+ * Without board arguments, every preset and two large custom boards are run. The report is
+ * written as JSON, one object per board, to report.json or perf-report.json.
+ */
+public class RenderBenchmark {
+
+	private static final long SEED = 0x5eedL;
+	private static final int MAX_MOVES = 200, RESIZES = 20;
+	private static final long PULSE_TIMEOUT_MILLIS = 5000;
+	private static final String[] PRESETS = { "Small", "Medium", "Large", "Humongous" };
+	private static final int[][] DEFAULT_CUSTOM = { { 100, 100, 1500 }, { 200, 200, 6000 } };
+
+	private Stage stage;
+	private Scene scene;
+	private long layoutStart;
+	private volatile CountDownLatch nextPulse;
+	private ArrayList<Long> pulseTimes = new ArrayList<Long>(), frameTimes = new ArrayList<Long>();
+
+	public static void main(String[] args) throws Exception {
+		setDefault("glass.platform", "Monocle");
+		setDefault("monocle.platform", "Headless");
+		setDefault("prism.order", "sw");
+
+		File report = new File("perf-report.json");
+		List<int[]> boards = new ArrayList<int[]>();
+		for (String arg : args) {
+			if (arg.endsWith(".json")) {
+				report = new File(arg);
+				continue;
+			}
+			String[] dims = arg.toLowerCase().split("x");
+			if (dims.length != 3)
+				throw new IllegalArgumentException("Board must be given as ROWSxCOLSxMINES: " + arg);
+			boards.add(new int[] { Integer.parseInt(dims[0]), Integer.parseInt(dims[1]), Integer.parseInt(dims[2]) });
+		}
+		if (boards.isEmpty()) {
+			for (int size = Board.SMALL; size <= Board.HUMONGOUS; size++) {
+				Board board = new Board(size);
+				boards.add(new int[] { board.getRows(), board.getCols(), board.getMines(), size });
+			}
+			boards.addAll(Arrays.asList(DEFAULT_CUSTOM));
+		}
+
+		CountDownLatch started = new CountDownLatch(1);
+		Platform.startup(started::countDown);
+		started.await();
+		Platform.setImplicitExit(false);
+
+		try {
+			RenderBenchmark benchmark = new RenderBenchmark();
+			StringBuilder json = new StringBuilder();
+			json.append("{\n  \"java\": \"").append(System.getProperty("java.version"));
+			json.append("\",\n  \"javafx\": \"").append(System.getProperty("javafx.runtime.version"));
+			json.append("\",\n  \"platform\": \"").append(System.getProperty("glass.platform"));
+			json.append("\",\n  \"seed\": ").append(SEED).append(",\n  \"boards\": [");
+			for (int i = 0; i < boards.size(); i++) {
+				int[] b = boards.get(i);
+				String name = b.length > 3 ? PRESETS[b[3]] : "Custom " + b[0] + "x" + b[1] + "x" + b[2];
+				System.out.println("Running " + name + "...");
+				json.append(i == 0 ? "\n" : ",\n").append(benchmark.run(name, b[0], b[1], b[2]));
+			}
+			json.append("\n  ]\n}\n");
+
+			try (Writer writer = new FileWriter(report)) {
+				writer.write(json.toString());
+			}
+			System.out.println("Report written to " + report.getAbsolutePath());
+		} finally {
+			Platform.exit();
+		}
+	}
+
+	private static void setDefault(String key, String value) {
+		if (System.getProperty(key) == null)
+			System.setProperty(key, value);
+	}
+
+	/**
+	 * Plays the script on one board and returns its report as a JSON object.
+	 */
+	private String run(String name, int rows, int cols, int mines) throws Exception {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		memory.gc();
+		long heapBefore = memory.getHeapMemoryUsage().getUsed();
+		pulseTimes.clear();
+		frameTimes.clear();
+
+		long start = System.nanoTime();
+		Board board = new Board(rows, cols, mines, SEED);
+		Runnable none = () -> { // public void run()
+		};
+		BoardContainer container = fx(() -> {
+			BoardContainer c = new BoardContainer(board, BoardContainer.cellSize(rows, cols, 800, 600), none, none, null);
+			show(c);
+			return c;
+		});
+		awaitPulse();
+		long build = System.nanoTime() - start;
+
+		AnimationTimer frames = new AnimationTimer() {
+			private long last;
+
+			@Override
+			public void handle(long now) {
+				if (last != 0)
+					frameTimes.add(now - last);
+				last = now;
+			}
+		};
+		fx(() -> {
+			frames.start();
+			return null;
+		});
+
+		// Reveal and flag cells in a fixed order, skipping mines, and flagged cells since a
+		// click does not reveal them.
+		Random script = new Random(SEED);
+		long[] reveal = new long[MAX_MOVES], flag = new long[MAX_MOVES];
+		int reveals = 0, flags = 0;
+		for (int attempt = 0; reveals + flags < MAX_MOVES && attempt < 20 * MAX_MOVES && !board.isWon(); attempt++) {
+			int r = script.nextInt(rows), c = script.nextInt(cols);
+			boolean flagging = script.nextInt(5) == 0;
+			int view = board.getView(r, c);
+			if (view == Board.SHOWN || (!flagging && (view != Board.HIDDEN || board.getValue(r, c) == Board.MINE)))
+				continue;
+			long time = fx(() -> click(container, r, c, flagging ? MouseButton.SECONDARY : MouseButton.PRIMARY));
+			if (flagging)
+				flag[flags++] = time;
+			else
+				reveal[reveals++] = time;
+			awaitPulse();
+		}
+
+		long[] resize = new long[RESIZES];
+		for (int i = 0; i < RESIZES; i++) {
+			double width = 400 + 60 * i, height = 300 + 45 * i;
+			int n = i;
+			fx(() -> {
+				long t = System.nanoTime();
+				stage.setWidth(width);
+				stage.setHeight(height);
+				container.resize(width, height);
+				resize[n] = System.nanoTime() - t;
+				return null;
+			});
+			awaitPulse();
+		}
+
+		fx(() -> {
+			frames.stop();
+			stage.close();
+			return null;
+		});
+		stage = null;
+		scene = null;
+		memory.gc();
+		long heapAfter = memory.getHeapMemoryUsage().getUsed();
+
+		StringBuilder json = new StringBuilder();
+		json.append("    {\n      \"name\": \"").append(name).append("\",\n");
+		json.append("      \"rows\": ").append(rows).append(", \"cols\": ").append(cols);
+		json.append(", \"mines\": ").append(mines).append(", \"moves\": ").append(reveals + flags).append(",\n");
+		json.append("      \"buildMillis\": ").append(millis(build)).append(",\n");
+		json.append("      \"reveal\": ").append(summary(Arrays.copyOf(reveal, reveals))).append(",\n");
+		json.append("      \"flag\": ").append(summary(Arrays.copyOf(flag, flags))).append(",\n");
+		json.append("      \"resize\": ").append(summary(resize)).append(",\n");
+		json.append("      \"pulse\": ").append(summary(toArray(pulseTimes))).append(",\n");
+		json.append("      \"frame\": ").append(summary(toArray(frameTimes))).append(",\n");
+		json.append("      \"heapBeforeBytes\": ").append(heapBefore);
+		json.append(", \"heapAfterBytes\": ").append(heapAfter);
+		json.append(", \"heapGrowthBytes\": ").append(heapAfter - heapBefore).append("\n    }");
+		return json.toString();
+	}
+
+	/**
+	 * Shows a board view in a new window, timing the CSS and layout part of every pulse.
+	 * Call on the JavaFX thread.
+	 */
+	private void show(BoardContainer container) {
+		stage = new Stage();
+		ScrollPane pane = new ScrollPane(container.getBoardView());
+		pane.setFitToWidth(true);
+		pane.setFitToHeight(true);
+		scene = new Scene(pane, 800, 600);
+		scene.addPreLayoutPulseListener(() -> { // public void run()
+			layoutStart = System.nanoTime();
+		});
+		scene.addPostLayoutPulseListener(() -> { // public void run()
+			pulseTimes.add(System.nanoTime() - layoutStart);
+			CountDownLatch latch = nextPulse;
+			if (latch != null)
+				latch.countDown();
+		});
+		stage.setScene(scene);
+		stage.show();
+	}
+
+	/**
+	 * Clicks a cell of the board view and returns the time the click took, in ns. Call on the
+	 * JavaFX thread.
+	 */
+	private long click(BoardContainer container, int r, int c, MouseButton button) {
+		Node target;
+		double x, y;
+		if (container.isVirtual()) {
+			// Scroll the cell into the middle of the canvas, then click its centre.
+			Minefield board = container.getField();
+			int size = container.getCellSize();
+			container.scrollTo((c + 0.5) / board.getCols(), (r + 0.5) / board.getRows());
+			Rectangle2D viewport = container.getViewport();
+			target = container.getBoardView().getChildrenUnmodifiable().get(0);
+			x = (c + 0.5) * size - viewport.getMinX() * board.getCols() * size;
+			y = (r + 0.5) * size - viewport.getMinY() * board.getRows() * size;
+		} else {
+			Parent cell = (Parent) container.getBoardView().getChildrenUnmodifiable().get(r * container.getField().getCols() + c);
+			target = cell.getChildrenUnmodifiable().get(cell.getChildrenUnmodifiable().size() - 1);
+			x = target.getLayoutBounds().getWidth() / 2;
+			y = target.getLayoutBounds().getHeight() / 2;
+		}
+		Point2D screen = target.localToScreen(x, y);
+		MouseEvent event = new MouseEvent(MouseEvent.MOUSE_CLICKED, x, y, screen == null ? x : screen.getX(),
+				screen == null ? y : screen.getY(), button, 1, false, false, false, false,
+				button == MouseButton.PRIMARY, false, button == MouseButton.SECONDARY, true, false, true, null);
+		long t = System.nanoTime();
+		Event.fireEvent(target, event);
+		return System.nanoTime() - t;
+	}
+
+	/**
+	 * Waits for the next pulse of the window, so the change just made is laid out.
+	 */
+	private void awaitPulse() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		nextPulse = latch;
+		Platform.runLater(Platform::requestNextPulse);
+		if (!latch.await(PULSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+			System.err.println("No pulse within " + PULSE_TIMEOUT_MILLIS + " ms.");
+		nextPulse = null;
+	}
+
+	/**
+	 * Runs an action on the JavaFX thread and waits for its result.
+	 */
+	private static <T> T fx(Callable<T> action) throws Exception {
+		FutureTask<T> task = new FutureTask<T>(action);
+		Platform.runLater(task);
+		return task.get();
+	}
+
+	private static long[] toArray(List<Long> list) {
+		long[] array = new long[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+
+	/**
+	 * Summarizes times in ns as a JSON object of count, mean, median, 95th percentile and
+	 * max, in ms.
+	 */
+	private static String summary(long[] nanos) {
+		if (nanos.length == 0)
+			return "{ \"count\": 0 }";
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		long sum = 0;
+		for (long n : sorted)
+			sum += n;
+		return "{ \"count\": " + sorted.length + ", \"mean\": " + millis(sum / sorted.length) + ", \"p50\": "
+				+ millis(sorted[sorted.length / 2]) + ", \"p95\": " + millis(sorted[(int) (sorted.length * 0.95)])
+				+ ", \"max\": " + millis(sorted[sorted.length - 1]) + " }";
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A snapshot of the game in progress, written when the application exits and read when it
+ * starts, so the game resumes where it was left. It holds the board and its topology, the
+ * view state, the head of the undo history, the move count and game clock, and the window
+ * and cell size. The topology is kept as its index in {@link Topology#builtIn()}, so only
+ * games of the built-in topologies can be kept.
+ *
+ * The file is small and binary: a fixed header, then the mines as a bitmap of longs, then
+ * the view state and the undo head view state as packed words, see
+ * {@link Board#getPackedView()}. Reading maps the file and copies each section out with one
+ * bulk get, so a session loads without parsing. Writing goes to a temporary file that is
+ * then moved over the old one, so a crash while exiting leaves the last session intact.
+ */
+public class Session {
+
+	private static final long MAGIC = 0x46584d5353455331L; // "FXMSSES1"
+	private static final int HEADER = 80;
+
+	/**
+	 * Header Offsets.
+	 */
+	private static final int ROWS = 8, COLS = 12, SIZE = 16, CELL_SIZE = 20, SEED = 24, MOVES = 32, HAS_UNDO = 36,
+			ELAPSED = 40, WIDTH = 48, HEIGHT = 56, TOPOLOGY = 64;
+
+	private Board board, undoHead;
+	private int cellSize, moves;
+	private long elapsedMillis;
+	private double width, height;
+
+	private Session() {
+	}
+
+	/**
+	 * Writes a snapshot of the given game.
+	 *
+	 * @param file file to write to, replacing the last session
+	 * @param game game to snapshot
+	 * @param width width of the main scene in px
+	 * @param height height of the main scene in px
+	 * @throws IOException if the file cannot be written, or the board has a topology that is
+	 *         not built in
+	 */
+	public static void write(File file, BoardContainer game, double width, double height) throws IOException {
+		Board board = game.getBoard(), undo = game.getUndoHead();
+		int topology = Arrays.asList(Topology.builtIn()).indexOf(board.getTopology());
+		if (topology < 0)
+			throw new IOException("Cannot keep a session of a board with the custom topology " + board.getTopology() + ".");
+		int cells = board.getRows() * board.getCols();
+		int mineLongs = (cells + 63) >>> 6, viewWords = (cells + 15) >>> 4;
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER + 8 * mineLongs + 4 * viewWords * (undo == null ? 1 : 2));
+
+		buffer.putLong(0, MAGIC);
+		buffer.putInt(ROWS, board.getRows());
+		buffer.putInt(COLS, board.getCols());
+		buffer.putInt(SIZE, board.getSize());
+		buffer.putInt(CELL_SIZE, game.getCellSize());
+		buffer.putLong(SEED, board.getSeed());
+		buffer.putInt(MOVES, game.getMoves());
+		buffer.putInt(HAS_UNDO, undo == null ? 0 : 1);
+		buffer.putLong(ELAPSED, game.getElapsedMillis());
+		buffer.putDouble(WIDTH, width);
+		buffer.putDouble(HEIGHT, height);
+		buffer.putInt(TOPOLOGY, topology);
+
+		BitSet mines = new BitSet(cells);
+		int[] values = board.getValues();
+		for (int i = 0; i < cells; i++)
+			if (values[i] == Board.MINE)
+				mines.set(i);
+		buffer.position(HEADER);
+		buffer.asLongBuffer().put(mines.toLongArray());
+		buffer.position(HEADER + 8 * mineLongs);
+		buffer.asIntBuffer().put(board.getPackedView());
+		if (undo != null) {
+			buffer.position(HEADER + 8 * mineLongs + 4 * viewWords);
+			buffer.asIntBuffer().put(undo.getPackedView());
+		}
+		buffer.rewind();
+
+		File temp = new File(file.getPath() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a snapshot written by {@link #write(File, BoardContainer, double, double)}.
+	 *
+	 * @param file file to read
+	 * @return the session
+	 * @throws IOException if the file cannot be read or is not a session snapshot
+	 */
+	public static Session read(File file) throws IOException {
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			if (in.length() < HEADER)
+				throw new IOException("Invalid FX Minesweeper session: File too short.");
+			MappedByteBuffer map = in.getChannel().map(MapMode.READ_ONLY, 0, in.length());
+			if (map.getLong(0) != MAGIC)
+				throw new IOException("Invalid FX Minesweeper session: Incorrect file header.");
+
+			int rows = map.getInt(ROWS), cols = map.getInt(COLS);
+			if (rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE)
+				throw new IOException("Invalid FX Minesweeper session: Incorrect board size.");
+			Topology[] topologies = Topology.builtIn();
+			int topology = map.getInt(TOPOLOGY);
+			if (topology < 0 || topology >= topologies.length)
+				throw new IOException("Invalid FX Minesweeper session: Unknown topology.");
+			boolean hasUndo = map.getInt(HAS_UNDO) != 0;
+			int cells = rows * cols;
+			int mineLongs = (cells + 63) >>> 6, viewWords = (cells + 15) >>> 4;
+			if (in.length() != HEADER + 8L * mineLongs + 4L * viewWords * (hasUndo ? 2 : 1))
+				throw new IOException("Invalid FX Minesweeper session: Incorrect file length.");
+
+			long[] mines = new long[mineLongs];
+			int[] view = new int[viewWords];
+			map.position(HEADER);
+			map.asLongBuffer().get(mines);
+			map.position(HEADER + 8 * mineLongs);
+			map.asIntBuffer().get(view);
+
+			Session session = new Session();
+			session.board = new Board(rows, cols, BitSet.valueOf(mines), view, map.getInt(SIZE), map.getLong(SEED),
+					topologies[topology]);
+			if (hasUndo) {
+				int[] undoView = new int[viewWords];
+				map.position(HEADER + 8 * mineLongs + 4 * viewWords);
+				map.asIntBuffer().get(undoView);
+				session.undoHead = session.board.fork();
+				session.undoHead.setPackedView(undoView);
+			}
+			session.cellSize = map.getInt(CELL_SIZE);
+			session.moves = map.getInt(MOVES);
+			session.elapsedMillis = map.getLong(ELAPSED);
+			session.width = map.getDouble(WIDTH);
+			session.height = map.getDouble(HEIGHT);
+			return session;
+		}
+	}
+
+	/**
+	 * Gets the board, with its view state.
+	 * @return the board
+	 */
+	public Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Gets the board as it was before the last move, a fork of {@link #getBoard()}.
+	 * @return the undo head, or null if there was nothing to undo
+	 */
+	public Board getUndoHead() {
+		return undoHead;
+	}
+
+	/**
+	 * Gets the size of the Cells of the board view.
+	 * @return cell size in px
+	 */
+	public int getCellSize() {
+		return cellSize;
+	}
+
+	/**
+	 * Gets the number of moves made.
+	 * @return number of moves
+	 */
+	public int getMoves() {
+		return moves;
+	}
+
+	/**
+	 * Gets the time on the game clock.
+	 * @return time since the first move in ms
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * Gets the width of the main scene.
+	 * @return width in px
+	 */
+	public double getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the main scene.
+	 * @return height in px
+	 */
+	public double getHeight() {
+		return height;
+	}
+}
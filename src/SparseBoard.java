@@ -0,0 +1,205 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A board for large boards with few mines, that keeps no array the size of the board. The
+ * mines are kept in an open-addressing hash set of cells, and the number of a cell is counted
+ * from the set when it is needed. View values are kept 2 bits per cell, as in {@link Board},
+ * in pages of 4096 cells that are only allocated once a cell in them leaves the hidden state;
+ * the pages are found through an open-addressing hash map from page number to page. Memory
+ * and the time to create a board grow with the mines and the area revealed or flagged, not
+ * with the area of the board. Each lookup is a hash probe rather than an array index, so a
+ * game that reveals most of the board is several times faster on {@link Board}.
+ *
+ * The rules are those of {@link LargeBoard}.
+ */
+public class SparseBoard extends LargeBoard {
+
+	private static final long EMPTY = -1;
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_MINES = 1 << 29;
+
+	/**
+	 * View Page Constants. A page holds 4096 cells in 256 words of 16 cells.
+	 */
+	private static final int PAGE_SHIFT = 12;
+	private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+	private static final int PAGE_WORDS = 1 << (PAGE_SHIFT - 4);
+
+	private int flags;
+	private long seed, hiddenSafe;
+
+	// Mines: cells, EMPTY for a free slot.
+	private long[] mineCells;
+
+	// View pages: page numbers, EMPTY for a free slot, and the pages in the same slots.
+	private long[] pageKeys;
+	private int[][] pages;
+	private int pageCount;
+
+	/**
+	 * Creates a board with randomly placed mines.
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param mines number of mines in the board
+	 */
+	public SparseBoard(int rows, int cols, int mines) {
+		this(rows, cols, mines, new Random().nextLong());
+	}
+
+	/**
+	 * Creates a board with mines placed from the given seed.
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param mines number of mines in the board
+	 * @param seed seed used to place the mines
+	 */
+	public SparseBoard(int rows, int cols, int mines, long seed) {
+		if (rows <= 0 || cols <= 0 || mines < 0 || mines >= (long) rows * cols)
+			throw new IllegalArgumentException("Invalid board: " + rows + "x" + cols + ", " + mines + " mines.");
+		if (mines > MAX_MINES)
+			throw new IllegalArgumentException("Too many mines for a sparse board: " + mines + ".");
+		this.rows = rows;
+		this.cols = cols;
+		this.mines = mines;
+		this.seed = seed;
+		this.hiddenSafe = (long) rows * cols - mines;
+		mineCells = new long[capacity(mines)];
+		Arrays.fill(mineCells, EMPTY);
+		pageKeys = new long[MIN_CAPACITY];
+		Arrays.fill(pageKeys, EMPTY);
+		pages = new int[MIN_CAPACITY][];
+		addMines(seed);
+	}
+
+	@Override
+	protected void placeMine(int row, int col) {
+		long cell = cell(row, col);
+		mineCells[find(mineCells, cell)] = cell;
+	}
+
+	@Override
+	protected boolean isMine(long cell) {
+		return mineCells[find(mineCells, cell)] == cell;
+	}
+
+	/**
+	 * Gets the mine value of a cell, counting the mines around it.
+	 */
+	@Override
+	protected int value(long cell) {
+		if (isMine(cell))
+			return Board.MINE;
+		int r = (int) (cell / cols), c = (int) (cell % cols);
+		int count = 0;
+		for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++)
+			for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++)
+				if ((nr != r || nc != c) && isMine(cell(nr, nc)))
+					count++;
+		return count;
+	}
+
+	@Override
+	protected int view(long cell) {
+		int[] page = pages[find(pageKeys, cell >>> PAGE_SHIFT)];
+		if (page == null)
+			return Board.HIDDEN;
+		int i = (int) (cell & PAGE_MASK);
+		return (page[i >>> 4] >>> ((i & 15) << 1)) & 3;
+	}
+
+	/**
+	 * Sets the view of a cell, allocating its page unless the cell is set to hidden. Pages
+	 * are kept once allocated, since removing from an open-addressing table would break the
+	 * probe chains through it.
+	 */
+	@Override
+	protected void setView(long cell, int view) {
+		long key = cell >>> PAGE_SHIFT;
+		int slot = find(pageKeys, key);
+		if (pages[slot] == null) {
+			if (view == Board.HIDDEN)
+				return;
+			if (2 * (pageCount + 1) > pageKeys.length) {
+				growPages();
+				slot = find(pageKeys, key);
+			}
+			pageKeys[slot] = key;
+			pages[slot] = new int[PAGE_WORDS];
+			pageCount++;
+		}
+		int[] page = pages[slot];
+		int i = (int) (cell & PAGE_MASK), shift = (i & 15) << 1;
+		page[i >>> 4] = (page[i >>> 4] & ~(3 << shift)) | (view << shift);
+	}
+
+	/**
+	 * Doubles the page table, rehashing its pages.
+	 */
+	private void growPages() {
+		long[] oldKeys = pageKeys;
+		int[][] oldPages = pages;
+		pageKeys = new long[oldKeys.length * 2];
+		Arrays.fill(pageKeys, EMPTY);
+		pages = new int[pageKeys.length][];
+		for (int i = 0; i < oldKeys.length; i++)
+			if (oldKeys[i] != EMPTY) {
+				int slot = find(pageKeys, oldKeys[i]);
+				pageKeys[slot] = oldKeys[i];
+				pages[slot] = oldPages[i];
+			}
+	}
+
+	/**
+	 * Finds the slot of a key in an open-addressing table with linear probing: the slot
+	 * holding it, or the free slot it would go in. Tables are kept at most half full.
+	 */
+	private static int find(long[] table, long key) {
+		int mask = table.length - 1;
+		int slot = (int) ((key * 0x9e3779b97f4a7c15L) >>> 32) & mask;
+		while (table[slot] != key && table[slot] != EMPTY)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Gets a power of two table size that keeps the given number of entries at most half full.
+	 */
+	private static int capacity(int entries) {
+		return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, 2 * entries - 1)) << 1);
+	}
+
+	@Override
+	protected void addFlags(int d) {
+		flags += d;
+	}
+
+	@Override
+	protected long getHiddenSafe() {
+		return hiddenSafe;
+	}
+
+	@Override
+	protected void addHiddenSafe(long d) {
+		hiddenSafe += d;
+	}
+
+	/**
+	 * Gets the number of view pages allocated, i.e. of 4096 cell pages in which a cell is not
+	 * hidden, or was once not hidden.
+	 * @return number of pages kept
+	 */
+	public int getViewPages() {
+		return pageCount;
+	}
+
+	@Override
+	public int getFlags() {
+		return flags;
+	}
+
+	@Override
+	public long getSeed() {
+		return seed;
+	}
+}
@@ -0,0 +1,397 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Broadcasts a live game to spectators over sockets. A spectator that connects gets a snapshot
+ * of the board, then a delta frame per move with the cells that changed.
+ *
+ * Frames are encoded once and shared: every spectator is given a read-only duplicate of the
+ * same buffer, with its own position, so a move costs one encoding however many spectators
+ * there are. The game thread only encodes the delta and forks the board (O(1)); accepting,
+ * writing and snapshots happen on the server thread, with snapshots read from the fork, which
+ * the game thread never writes to.
+ *
+ * Each spectator has a bounded queue. A spectator that falls QUEUE_FRAMES frames behind is
+ * dropped to snapshots, sent at most every SNAPSHOT_MILLIS, and goes back to deltas once a
+ * snapshot of the latest move is fully written, so a spectator of an idle game is sent one
+ * snapshot, not one every SNAPSHOT_MILLIS. A slow spectator never holds up the game or the
+ * others.
+ *
+ * All numbers are big-endian. Every frame is: int length of the rest of the frame, byte type,
+ * long number of the move it brings the spectator up to. A cell is sent as one byte: the view
+ * value in bits 0-1, and for shown cells the mine value in bits 2-5.
+ *   SNAPSHOT: int rows, int cols, int mines, the packed view of {@link Board#getPackedView()}
+ *   as (rows * cols + 15) / 16 ints of 16 cells, 2 bits each from the low bits up, then the
+ *   mine value of each shown cell in cell order, 4 bits each, two to a byte, low bits first.
+ *   DELTA: int count, then count times int cell (row * cols + col) and the cell byte.
+ */
+public class SpectatorServer implements Closeable {
+
+	public static final byte SNAPSHOT = 1, DELTA = 2;
+
+	/**
+	 * Frames a spectator may have queued before it is dropped to snapshots.
+	 */
+	private static final int QUEUE_FRAMES = 256;
+
+	/**
+	 * Shortest time between two snapshots to a spectator that is behind, in ms.
+	 */
+	private static final long SNAPSHOT_MILLIS = 500;
+
+	private static final int HEADER = 13;
+
+	private Selector selector;
+	private ServerSocketChannel server;
+	private Thread thread;
+	private volatile boolean running = true;
+	private ConcurrentLinkedQueue<Move> moves = new ConcurrentLinkedQueue<Move>();
+	private List<Spectator> spectators = new ArrayList<Spectator>();
+	private volatile int spectatorCount;
+
+	// Game thread state.
+	private Board board;
+	private int[] changed = new int[64];
+	private int changedCount;
+	private long seq;
+
+	// Server thread state.
+	private Board latest;
+	private long latestSeq = -1, snapshotSeq = -1;
+	private ByteBuffer snapshot;
+
+	/**
+	 * Opens a server on the given port, on the loopback interface, and starts its thread.
+	 * @param port port to listen on, or 0 for any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public SpectatorServer(int port) throws IOException {
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("localhost", port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+		thread = new Thread(this::run, "Spectator Server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Starts broadcasting a new game. Every spectator is sent a snapshot of it. Call on the
+	 * game thread.
+	 * @param board board of the new game
+	 */
+	public void setBoard(Board board) {
+		this.board = board;
+		changedCount = 0;
+		publish(null);
+	}
+
+	/**
+	 * Adds a cell that changed in the current move. Call on the game thread, e.g. from
+	 * {@link BoardContainer#addChangeListener(java.util.function.IntConsumer)}.
+	 * @param cell changed cell (row * cols + col)
+	 */
+	public void changed(int cell) {
+		if (changedCount == changed.length)
+			changed = Arrays.copyOf(changed, changed.length * 2);
+		changed[changedCount++] = cell;
+	}
+
+	/**
+	 * Ends the current move, sending its changed cells to the spectators. Call on the game
+	 * thread, e.g. from {@link BoardContainer#addMoveListener(Runnable)}.
+	 */
+	public void moved() {
+		if (board == null || changedCount == 0)
+			return;
+		ByteBuffer frame = ByteBuffer.allocateDirect(HEADER + 4 + 5 * changedCount);
+		frame.putInt(frame.capacity() - 4).put(DELTA).putLong(seq + 1).putInt(changedCount);
+		int cols = board.getCols();
+		for (int i = 0; i < changedCount; i++) {
+			int cell = changed[i];
+			frame.putInt(cell).put(cellByte(board, cell / cols, cell % cols));
+		}
+		frame.flip();
+		changedCount = 0;
+		publish(frame.asReadOnlyBuffer());
+	}
+
+	private void publish(ByteBuffer delta) {
+		moves.add(new Move(++seq, board.fork(), delta));
+		selector.wakeup();
+	}
+
+	private static byte cellByte(Board board, int r, int c) {
+		int view = board.getView(r, c);
+		return (byte) (view == Board.SHOWN ? view | board.getValue(r, c) << 2 : view);
+	}
+
+	/**
+	 * Gets the port the server listens on.
+	 * @return the port
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * Runs the server thread: accepts spectators, hands out moves and writes queued frames.
+	 */
+	private void run() {
+		try {
+			while (running) {
+				selector.select(SNAPSHOT_MILLIS);
+				for (SelectionKey key : selector.selectedKeys()) {
+					if (!key.isValid())
+						continue;
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					Spectator spectator = (Spectator) key.attachment();
+					if (key.isReadable())
+						read(spectator);
+					if (key.isValid() && key.isWritable())
+						write(spectator);
+				}
+				selector.selectedKeys().clear();
+
+				// Queue every move waiting, then write to each spectator once, so a burst of
+				// moves costs one gathering write per spectator.
+				boolean delivered = false;
+				for (Move move; (move = moves.poll()) != null; delivered = true)
+					deliver(move);
+
+				long now = System.currentTimeMillis();
+				for (Spectator spectator : new ArrayList<Spectator>(spectators)) {
+					caughtUp(spectator);
+					if (spectator.behind && spectator.queue.isEmpty() && now - spectator.lastSnapshot >= SNAPSHOT_MILLIS
+							&& latest != null) {
+						spectator.queue.add(snapshot().duplicate());
+						spectator.seq = latestSeq;
+						spectator.lastSnapshot = now;
+						write(spectator);
+					} else if (delivered && !spectator.queue.isEmpty()) {
+						write(spectator);
+					}
+				}
+			}
+		} catch (IOException e) {
+			if (running)
+				e.printStackTrace();
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = server.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			Spectator spectator = new Spectator(channel);
+			spectator.key = channel.register(selector, SelectionKey.OP_READ, spectator);
+			spectators.add(spectator);
+			spectatorCount = spectators.size();
+			spectator.behind = true;
+		}
+	}
+
+	/**
+	 * Queues a move for every spectator that is keeping up, and drops the others to snapshots.
+	 */
+	private void deliver(Move move) {
+		latest = move.board;
+		latestSeq = move.seq;
+		for (Spectator spectator : new ArrayList<Spectator>(spectators)) {
+			if (move.delta == null || spectator.queue.size() >= QUEUE_FRAMES) {
+				// A new game or a full queue: keep the frame being written and drop the rest.
+				ByteBuffer current = spectator.queue.peek();
+				spectator.queue.clear();
+				if (current != null && current.position() > 0)
+					spectator.queue.add(current);
+				spectator.behind = true;
+				spectator.seq = -1;
+				spectator.lastSnapshot = 0;
+			}
+			if (spectator.behind) {
+				// Caught up: a snapshot of the move before this one, fully written.
+				if (move.delta != null && spectator.queue.isEmpty() && spectator.seq == move.seq - 1)
+					spectator.behind = false;
+				else
+					continue;
+			}
+			spectator.queue.add(move.delta.duplicate());
+			spectator.seq = move.seq;
+		}
+	}
+
+	/**
+	 * Takes a spectator back to deltas once the snapshot of the latest move is fully written.
+	 */
+	private void caughtUp(Spectator spectator) {
+		if (spectator.behind && spectator.queue.isEmpty() && spectator.seq == latestSeq)
+			spectator.behind = false;
+	}
+
+	/**
+	 * Gets the snapshot of the latest move, encoding it once per move.
+	 */
+	private ByteBuffer snapshot() {
+		if (snapshotSeq != latestSeq) {
+			int[] words = latest.getPackedView(), values = latest.getValues();
+			int shownCount = 0;
+			for (int word : words)
+				shownCount += Integer.bitCount(shown(word));
+			ByteBuffer frame = ByteBuffer.allocateDirect(HEADER + 12 + 4 * words.length + (shownCount + 1) / 2);
+			frame.putInt(frame.capacity() - 4).put(SNAPSHOT).putLong(latestSeq);
+			frame.putInt(latest.getRows()).putInt(latest.getCols()).putInt(latest.getMines());
+			frame.asIntBuffer().put(words);
+			frame.position(frame.position() + 4 * words.length);
+			int pending = -1;
+			for (int w = 0; w < words.length; w++)
+				for (int bits = shown(words[w]); bits != 0; bits &= bits - 1) {
+					int value = values[w * 16 + (Integer.numberOfTrailingZeros(bits) >>> 1)];
+					if (pending < 0) {
+						pending = value;
+					} else {
+						frame.put((byte) (pending | value << 4));
+						pending = -1;
+					}
+				}
+			if (pending >= 0)
+				frame.put((byte) pending);
+			frame.flip();
+			snapshot = frame.asReadOnlyBuffer();
+			snapshotSeq = latestSeq;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Gets the bits of the shown cells of a packed view word: the low bit of each cell that
+	 * is 01.
+	 */
+	private static int shown(int word) {
+		return word & ~(word >>> 1) & 0x55555555;
+	}
+
+	/**
+	 * Writes as much of a spectator's queue as its socket takes without blocking, and
+	 * registers for write readiness if anything is left.
+	 */
+	private void write(Spectator spectator) {
+		try {
+			while (!spectator.queue.isEmpty()) {
+				ByteBuffer[] frames = spectator.queue.toArray(new ByteBuffer[0]);
+				spectator.channel.write(frames);
+				while (!spectator.queue.isEmpty() && !spectator.queue.peek().hasRemaining())
+					spectator.queue.poll();
+				if (frames[frames.length - 1].hasRemaining())
+					break;
+			}
+			caughtUp(spectator);
+			if (spectator.key.isValid())
+				spectator.key.interestOps(spectator.queue.isEmpty() ? SelectionKey.OP_READ
+						: SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		} catch (IOException e) {
+			drop(spectator);
+		}
+	}
+
+	/**
+	 * Reads and discards anything a spectator sends, to notice when it disconnects.
+	 */
+	private void read(Spectator spectator) {
+		try {
+			int read;
+			while ((read = spectator.channel.read(spectator.discard)) > 0)
+				spectator.discard.clear();
+			if (read < 0)
+				drop(spectator);
+		} catch (IOException e) {
+			drop(spectator);
+		}
+	}
+
+	private void drop(Spectator spectator) {
+		spectators.remove(spectator);
+		spectatorCount = spectators.size();
+		spectator.key.cancel();
+		try {
+			spectator.channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Gets the number of spectators connected.
+	 * @return number of spectators
+	 */
+	public int getSpectators() {
+		return spectatorCount;
+	}
+
+	/**
+	 * Stops the server and disconnects all spectators.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Spectator spectator : new ArrayList<Spectator>(spectators))
+			drop(spectator);
+		server.close();
+		selector.close();
+	}
+
+	/**
+	 * A move handed from the game thread to the server thread: a fork of the board after the
+	 * move, and its delta frame, or null for a new game.
+	 */
+	private static class Move {
+
+		private long seq;
+		private Board board;
+		private ByteBuffer delta;
+
+		Move(long seq, Board board, ByteBuffer delta) {
+			this.seq = seq;
+			this.board = board;
+			this.delta = delta;
+		}
+	}
+
+	/**
+	 * A connected spectator and its queue of frames.
+	 */
+	private static class Spectator {
+
+		private SocketChannel channel;
+		private SelectionKey key;
+		private ArrayDeque<ByteBuffer> queue = new ArrayDeque<ByteBuffer>();
+		private ByteBuffer discard = ByteBuffer.allocate(256);
+		private boolean behind;
+		private long seq = -1, lastSnapshot;
+
+		Spectator(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+}
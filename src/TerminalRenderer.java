@@ -0,0 +1,297 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Draws a board on an ANSI terminal, for playing without the GUI, e.g. over SSH, and for
+ * watching large boards while debugging. The first render clears the screen and draws every
+ * cell in the viewport; after that, each render compares the board with a fork taken at the
+ * last render, see {@link Board#diff(Board, java.util.function.IntConsumer)}, and only moves
+ * the cursor to the cells that changed and redraws them. A render costs time and bytes in
+ * proportion to the change, not to the board.
+ *
+ * Output is built in a byte buffer that is kept between renders, and written with one call.
+ * The cursor is not moved between cells that are next to each other in a row, since writing
+ * a cell already moves it right.
+ *
+ * One character is drawn per cell: # for hidden, F for flagged, ? for a question mark, and
+ * for shown cells a space, a number or M for a mine. A status line below the viewport gives
+ * the mines and flags.
+ */
+public class TerminalRenderer {
+
+	private static final byte ESC = 0x1b;
+	private static final byte[] CLEAR = { ESC, '[', '0', 'm', ESC, '[', '2', 'J' };
+	private static final byte[] CLEAR_LINE = { ESC, '[', 'K' };
+	private static final byte[] RESET = { ESC, '[', '0', 'm' };
+
+	/**
+	 * ANSI colour codes of the numbers 1-8, after the classic game: blue, green, red, magenta,
+	 * bright red, cyan, bright white and grey, so 7 and 8 show on dark and light terminals.
+	 */
+	private static final String[] NUMBER_COLORS = { "34", "32", "31", "35", "91", "36", "97", "90" };
+
+	/**
+	 * Size of the terminal when it cannot be found, and the lines below the viewport: a
+	 * blank line and the status line.
+	 */
+	private static final int DEFAULT_ROWS = 24, DEFAULT_COLS = 80, STATUS_LINES = 2;
+
+	private Board board, drawn;
+	private OutputStream out;
+	private boolean color;
+	private int top, left, height, width;
+	private byte[] buffer = new byte[4096];
+	private int length;
+	private int cursorRow = -1, cursorCol = -1;
+
+	/**
+	 * Creates a renderer of the top left of the board, as much of it as fits in the terminal
+	 * above the status line. See {@link #terminalSize()}.
+	 * @param board board to draw
+	 * @param out terminal to draw on
+	 * @param color true to colour the numbers
+	 */
+	public TerminalRenderer(Board board, OutputStream out, boolean color) {
+		this.board = board;
+		this.out = out;
+		this.color = color;
+		int[] size = terminalSize();
+		setViewport(0, 0, size[0] - STATUS_LINES, size[1]);
+	}
+
+	/**
+	 * Gets the size of the terminal, from $LINES and $COLUMNS if set, else from stty size
+	 * on /dev/tty, else 24x80.
+	 * @return rows and cols of the terminal
+	 */
+	public static int[] terminalSize() {
+		try {
+			return new int[] { Integer.parseInt(System.getenv("LINES")), Integer.parseInt(System.getenv("COLUMNS")) };
+		} catch (NumberFormatException e) {
+			// Not exported by the shell; ask the terminal.
+		}
+		try {
+			Process stty = new ProcessBuilder("stty", "size").redirectInput(ProcessBuilder.Redirect.from(new File("/dev/tty")))
+					.redirectErrorStream(true).start();
+			String line;
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(stty.getInputStream()))) {
+				line = in.readLine();
+			}
+			if (stty.waitFor() == 0 && line != null) {
+				String[] size = line.trim().split("\\s+");
+				return new int[] { Integer.parseInt(size[0]), Integer.parseInt(size[1]) };
+			}
+		} catch (IOException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			// No stty or no terminal, e.g. on Windows or with input redirected.
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return new int[] { DEFAULT_ROWS, DEFAULT_COLS };
+	}
+
+	/**
+	 * Sets the part of the board to draw. The whole viewport is drawn on the next render.
+	 * @param top first row to draw
+	 * @param left first col to draw
+	 * @param height number of rows to draw
+	 * @param width number of cols to draw
+	 */
+	public void setViewport(int top, int left, int height, int width) {
+		this.top = Math.max(0, Math.min(top, board.getRows() - 1));
+		this.left = Math.max(0, Math.min(left, board.getCols() - 1));
+		this.height = Math.max(1, Math.min(height, board.getRows() - this.top));
+		this.width = Math.max(1, Math.min(width, board.getCols() - this.left));
+		drawn = null;
+	}
+
+	/**
+	 * Draws the changes since the last render, or the whole viewport on the first render and
+	 * after the viewport is set.
+	 * @throws IOException if the terminal cannot be written to
+	 */
+	public void render() throws IOException {
+		length = 0;
+		if (drawn == null) {
+			put(CLEAR);
+			cursorRow = -1;
+			for (int r = top; r < top + height; r++)
+				for (int c = left; c < left + width; c++)
+					cell(r, c);
+		} else {
+			int cols = board.getCols();
+			board.diff(drawn, (cell) -> { // public void accept(int cell)
+				int r = cell / cols, c = cell % cols;
+				if (r >= top && r < top + height && c >= left && c < left + width)
+					cell(r, c);
+			});
+		}
+		status();
+		drawn = board.fork();
+		out.write(buffer, 0, length);
+		out.flush();
+	}
+
+	/**
+	 * Draws one cell, moving the cursor to it unless it is already there.
+	 */
+	private void cell(int r, int c) {
+		int row = r - top + 1, col = c - left + 1;
+		if (row != cursorRow || col != cursorCol)
+			moveTo(row, col);
+		switch (board.getView(r, c)) {
+		case Board.SHOWN:
+			int value = board.getValue(r, c);
+			if (value == Board.MINE)
+				put('M');
+			else if (value == 0)
+				put(' ');
+			else if (color) {
+				put(ESC);
+				put('[');
+				putAscii(NUMBER_COLORS[value - 1]);
+				put('m');
+				put('0' + value);
+				put(RESET);
+			} else
+				put('0' + value);
+			break;
+		case Board.FLAGGED:
+			put('F');
+			break;
+		case Board.QMARK:
+			put('?');
+			break;
+		default:
+			put('#');
+		}
+		cursorRow = row;
+		cursorCol = col + 1;
+	}
+
+	/**
+	 * Draws the status line below the viewport and leaves the cursor at its end.
+	 */
+	private void status() {
+		moveTo(height + STATUS_LINES, 1);
+		put(CLEAR_LINE);
+		putAscii("Mines: ");
+		putInt(board.getMines());
+		putAscii("  Flags: ");
+		putInt(board.getFlags());
+		cursorRow = -1;
+	}
+
+	/**
+	 * Moves the cursor to the given row and col, from 1.
+	 */
+	private void moveTo(int row, int col) {
+		put(ESC);
+		put('[');
+		putInt(row);
+		put(';');
+		putInt(col);
+		put('H');
+	}
+
+	private void put(int b) {
+		ensure(1);
+		buffer[length++] = (byte) b;
+	}
+
+	private void put(byte[] bytes) {
+		ensure(bytes.length);
+		System.arraycopy(bytes, 0, buffer, length, bytes.length);
+		length += bytes.length;
+	}
+
+	private void putAscii(String s) {
+		ensure(s.length());
+		for (int i = 0; i < s.length(); i++)
+			buffer[length++] = (byte) s.charAt(i);
+	}
+
+	/**
+	 * Writes a non-negative int in decimal, without creating a String.
+	 */
+	private void putInt(int n) {
+		ensure(10);
+		int start = length;
+		do {
+			buffer[length++] = (byte) ('0' + n % 10);
+			n /= 10;
+		} while (n > 0);
+		for (int i = start, j = length - 1; i < j; i++, j--) {
+			byte b = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = b;
+		}
+	}
+
+	private void ensure(int extra) {
+		if (length + extra > buffer.length)
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+	}
+
+	/**
+	 * Plays a game in the terminal. Reads one command per line from standard input:
+	 * "r ROW COL" to reveal, "f ROW COL" to flag, "v TOP LEFT HEIGHT WIDTH" to move the
+	 * viewport, and "q" to quit. Rows and cols count from 0.
+	 *
+	 * @param args optional ROWS COLS MINES, or a size name (small, medium, large, humongous)
+	 * @throws IOException if the terminal cannot be read or written
+	 */
+	public static void main(String[] args) throws IOException {
+		Board board;
+		if (args.length >= 3)
+			board = new Board(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		else if (args.length == 1) {
+			int size = Arrays.asList("small", "medium", "large", "humongous").indexOf(args[0].toLowerCase());
+			if (size < 0)
+				throw new IllegalArgumentException("Unknown board size: " + args[0]);
+			board = new Board(size);
+		} else
+			board = new Board(Board.MEDIUM);
+
+		TerminalRenderer renderer = new TerminalRenderer(board, System.out, System.console() != null);
+		renderer.render();
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		for (String line; (line = in.readLine()) != null;) {
+			String[] command = line.trim().split("\\s+");
+			try {
+				switch (command[0]) {
+				case "r":
+				case "f":
+					int row = Integer.parseInt(command[1]), col = Integer.parseInt(command[2]);
+					if (row < 0 || col < 0 || row >= board.getRows() || col >= board.getCols())
+						break;
+					if (command[0].equals("f")) {
+						board.flag(row, col);
+					} else if (!board.reveal(row, col)) {
+						renderer.render();
+						System.out.println("\nYou hit a mine and lost.");
+						return;
+					}
+					break;
+				case "v":
+					renderer.setViewport(Integer.parseInt(command[1]), Integer.parseInt(command[2]),
+							Integer.parseInt(command[3]), Integer.parseInt(command[4]));
+					break;
+				case "q":
+					System.out.println();
+					return;
+				}
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				// Ignore malformed commands; the board is redrawn as is.
+			}
+			renderer.render();
+			if (board.isWon()) {
+				System.out.println("\nYou found all of the mines and won!");
+				return;
+			}
+		}
+	}
+}
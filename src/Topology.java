@@ -0,0 +1,279 @@
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Defines which cells of a board are neighbours of each other, i.e. which cells a number
+ * counts and which cells an opening spreads to. Neighbourhoods must be symmetric: if a is a
+ * neighbour of b, b is a neighbour of a.
+ *
+ * Regular topologies, whose neighbours never repeat, never wrap and come out in ascending
+ * order, are computed from the row and col on every lookup and take no memory per cell.
+ * Other topologies build the neighbours of every cell of a board shape once, as a compressed
+ * sparse row (CSR) table: the neighbours of cell i (row * cols + col) are
+ * neighbours[offsets[i]] to neighbours[offsets[i + 1] - 1], in ascending order. The most
+ * recently used tables are cached, so games of the same shape share one table. A table takes
+ * up to (maxDegree + 1) ints per cell, so the cache only holds soft references: tables no
+ * board is using are dropped if memory runs low.
+ */
+public abstract class Topology {
+
+	/**
+	 * Number of board shapes whose tables are cached per topology.
+	 */
+	private static final int CACHE_SIZE = 4;
+
+	/**
+	 * Row and col offsets of the neighbours of a hex cell in an even row, in ascending order.
+	 * Cells in odd rows shift the cols of the rows above and below one to the right.
+	 */
+	private static final int[] HEX_ROWS = { -1, -1, 0, 0, 1, 1 }, HEX_COLS = { -1, 0, -1, 1, -1, 0 };
+
+	/**
+	 * Row and col offsets of a knight's moves, in ascending order.
+	 */
+	private static final int[] KNIGHT_ROWS = { -2, -2, -1, -1, 1, 1, 2, 2 }, KNIGHT_COLS = { -1, 1, -2, 2, -2, 2, -1, 1 };
+
+	/**
+	 * The 8 surrounding cells, as in standard minesweeper.
+	 */
+	public static final Topology SQUARE = new Topology("Square", 8, true) {
+		@Override
+		protected int neighbours(int rows, int cols, int r, int c, int[] out) {
+			int n = 0;
+			for (int nr = Math.max(0, r - 1); nr <= Math.min(rows - 1, r + 1); nr++)
+				for (int nc = Math.max(0, c - 1); nc <= Math.min(cols - 1, c + 1); nc++)
+					if (nr != r || nc != c)
+						out[n++] = nr * cols + nc;
+			return n;
+		}
+	};
+
+	/**
+	 * The 8 surrounding cells, wrapping around the edges of the board.
+	 */
+	public static final Topology TORUS = new Topology("Torus", 8, false) {
+		@Override
+		protected int neighbours(int rows, int cols, int r, int c, int[] out) {
+			int n = 0;
+			for (int ro = -1; ro < 2; ro++)
+				for (int co = -1; co < 2; co++)
+					if (ro != 0 || co != 0)
+						out[n++] = Math.floorMod(r + ro, rows) * cols + Math.floorMod(c + co, cols);
+			return n;
+		}
+	};
+
+	/**
+	 * The 6 surrounding cells of a hexagonal grid, with odd rows shifted half a cell right.
+	 */
+	public static final Topology HEX = new Topology("Hex", 6, true) {
+		@Override
+		protected int neighbours(int rows, int cols, int r, int c, int[] out) {
+			int n = 0, shift = r & 1;
+			for (int i = 0; i < HEX_ROWS.length; i++) {
+				int nr = r + HEX_ROWS[i], nc = c + HEX_COLS[i] + (HEX_ROWS[i] == 0 ? 0 : shift);
+				if (nr >= 0 && nr < rows && nc >= 0 && nc < cols)
+					out[n++] = nr * cols + nc;
+			}
+			return n;
+		}
+	};
+
+	/**
+	 * The 8 cells a knight's move away.
+	 */
+	public static final Topology KNIGHT = new Topology("Knight", 8, true) {
+		@Override
+		protected int neighbours(int rows, int cols, int r, int c, int[] out) {
+			int n = 0;
+			for (int i = 0; i < KNIGHT_ROWS.length; i++) {
+				int nr = r + KNIGHT_ROWS[i], nc = c + KNIGHT_COLS[i];
+				if (nr >= 0 && nr < rows && nc >= 0 && nc < cols)
+					out[n++] = nr * cols + nc;
+			}
+			return n;
+		}
+	};
+
+	/**
+	 * The built-in topologies, in the order saved games number them.
+	 */
+	private static final Topology[] BUILT_IN = { SQUARE, TORUS, HEX, KNIGHT };
+
+	private String name;
+	private int maxDegree;
+	private boolean regular;
+	private Map<Long, SoftReference<Adjacency>> cache = new LinkedHashMap<Long, SoftReference<Adjacency>>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, SoftReference<Adjacency>> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * Creates a topology.
+	 * @param name name of the topology
+	 * @param maxDegree largest number of neighbours a cell can have
+	 * @param regular true if {@link #neighbours(int, int, int, int, int[])} never writes a
+	 *                cell twice or the cell itself, and writes in ascending order, on every
+	 *                board; such topologies are not built into a table
+	 */
+	protected Topology(String name, int maxDegree, boolean regular) {
+		this.name = name;
+		this.maxDegree = maxDegree;
+		this.regular = regular;
+	}
+
+	/**
+	 * Writes the neighbours of a cell to the given array. Unless the topology is regular,
+	 * duplicates and the cell itself are removed by the caller, so wrapping topologies need
+	 * not check for them on small boards.
+	 *
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @param r row of the cell
+	 * @param c col of the cell
+	 * @param out array of at least maxDegree cells to write the neighbours (row * cols + col) to
+	 * @return number of neighbours written
+	 */
+	protected abstract int neighbours(int rows, int cols, int r, int c, int[] out);
+
+	/**
+	 * Gets the neighbours of a board shape. For a regular topology they are computed on each
+	 * lookup; otherwise the table is built if it is not cached.
+	 *
+	 * @param rows number of rows in the board
+	 * @param cols number of cols in the board
+	 * @return neighbours of the board shape
+	 * @throws ArithmeticException if the table would not fit in an int array
+	 */
+	public Adjacency adjacency(int rows, int cols) {
+		if (regular)
+			return new Adjacency(this, rows, cols, null, null);
+		long key = (long) rows << 32 | cols;
+		synchronized (cache) {
+			SoftReference<Adjacency> cached = cache.get(key);
+			Adjacency adjacency = cached == null ? null : cached.get();
+			if (adjacency != null)
+				return adjacency;
+		}
+		Adjacency adjacency = build(rows, cols);
+		synchronized (cache) {
+			cache.put(key, new SoftReference<Adjacency>(adjacency));
+		}
+		return adjacency;
+	}
+
+	/**
+	 * Builds the neighbour table of a board shape.
+	 */
+	private Adjacency build(int rows, int cols) {
+		int cells = Math.multiplyExact(rows, cols);
+		int[] offsets = new int[Math.addExact(cells, 1)], out = new int[maxDegree];
+		int[] neighbours = new int[Math.multiplyExact(cells, maxDegree)];
+		int k = 0;
+		for (int r = 0; r < rows; r++)
+			for (int c = 0; c < cols; c++) {
+				int cell = r * cols + c, start = k;
+				int count = neighbours(rows, cols, r, c, out);
+				for (int i = 0; i < count; i++) {
+					int n = out[i];
+					boolean seen = n == cell;
+					for (int j = start; j < k && !seen; j++)
+						seen = neighbours[j] == n;
+					if (!seen)
+						neighbours[k++] = n;
+				}
+				Arrays.sort(neighbours, start, k);
+				offsets[cell + 1] = k;
+			}
+		return new Adjacency(this, rows, cols, offsets, k == neighbours.length ? neighbours : Arrays.copyOf(neighbours, k));
+	}
+
+	/**
+	 * Gets the largest number of neighbours a cell can have.
+	 * @return largest number of neighbours
+	 */
+	public int getMaxDegree() {
+		return maxDegree;
+	}
+
+	/**
+	 * Gets the name of this topology.
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * Gets the built-in topologies, in a fixed order, so saved games can refer to their
+	 * topology by index or name. Games of other topologies cannot be saved.
+	 * @return the built-in topologies, SQUARE first
+	 */
+	public static Topology[] builtIn() {
+		return BUILT_IN.clone();
+	}
+
+	/**
+	 * Finds a built-in topology by name.
+	 * @param name name of the topology
+	 * @return the topology, or null if no built-in topology has the name
+	 */
+	public static Topology forName(String name) {
+		for (Topology topology : BUILT_IN)
+			if (topology.name.equals(name))
+				return topology;
+		return null;
+	}
+
+	/**
+	 * The neighbours of every cell of a board shape, computed from the topology or looked up
+	 * in its compressed sparse row table. Tables are shared between all boards of the shape.
+	 */
+	public static class Adjacency {
+
+		private Topology topology;
+		private int rows, cols;
+		private int[] offsets, neighbours;
+
+		Adjacency(Topology topology, int rows, int cols, int[] offsets, int[] neighbours) {
+			this.topology = topology;
+			this.rows = rows;
+			this.cols = cols;
+			this.offsets = offsets;
+			this.neighbours = neighbours;
+		}
+
+		/**
+		 * Writes the neighbours of a cell to the given array, in ascending order.
+		 * @param cell cell (row * cols + col)
+		 * @param out array of at least {@link #getMaxDegree()} cells to write the neighbours to
+		 * @return number of neighbours written
+		 */
+		public int neighbours(int cell, int[] out) {
+			if (offsets == null)
+				return topology.neighbours(rows, cols, cell / cols, cell % cols, out);
+			int start = offsets[cell], count = offsets[cell + 1] - start;
+			System.arraycopy(neighbours, start, out, 0, count);
+			return count;
+		}
+
+		/**
+		 * Gets the largest number of neighbours a cell can have.
+		 * @return largest number of neighbours
+		 */
+		public int getMaxDegree() {
+			return topology.maxDegree;
+		}
+	}
+}